@@ -0,0 +1,79 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Checks that the triggers created by AppDatabase::createImageCountTriggers keep txn.image_count
+ * and txn.has_images in line with the image table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageCountTriggerTest {
+
+    private AppDatabase db;
+    private int idTransaction;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(AppDatabase.CREATE_TRIGGERS_CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        // the first person gets id 1
+        db.personDao().insert(new Person("Alice"));
+        idTransaction = (int) db.transactionDao().insert(new Transaction(1, 100, true, "", new Date()));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void imageLinks_areCounted() {
+        db.imageDao().update(idTransaction, Arrays.asList("a.jpg", "b.jpg"));
+        assertCount(2);
+
+        db.imageDao().update(idTransaction, Arrays.asList("b.jpg", "c.jpg", "d.jpg"));
+        assertCount(3);
+
+        db.imageDao().update(idTransaction, null);
+        assertCount(0);
+    }
+
+    @Test
+    public void updatedTransaction_keepsCount() {
+        db.imageDao().update(idTransaction, Arrays.asList("a.jpg", "b.jpg"));
+
+        // the app writes whole rows, with values not knowing about the images
+        Transaction transaction = new Transaction(1, 200, true, "", new Date());
+        transaction.idTransaction = idTransaction;
+        db.transactionDao().update(transaction);
+
+        assertCount(2);
+    }
+
+    private void assertCount(int count) {
+        Transaction transaction = db.transactionDao().getTransaction(idTransaction).transaction;
+        assertThat(transaction.imageCount, is(count));
+        assertThat(transaction.hasImages, is(count > 0));
+    }
+}
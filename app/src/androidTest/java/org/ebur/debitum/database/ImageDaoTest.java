@@ -0,0 +1,88 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class ImageDaoTest {
+
+    private AppDatabase db;
+    private ImageDao imageDao;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        imageDao = db.imageDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void deleteLinks_moreThanMaxBindParameters() {
+        List<String> filenames = new ArrayList<>();
+        for (int i = 0; i < 2 * AppDatabase.MAX_BIND_PARAMETERS + 1; i++) {
+            String filename = String.format("%08x.jpg", i);
+            filenames.add(filename);
+            imageDao.insert(new Image(filename, 1));
+        }
+        imageDao.insert(new Image("kept.jpg", 1));
+
+        imageDao.deleteLinks(filenames);
+
+        assertThat(imageDao.getImageFilenames(1), is(Collections.singletonList("kept.jpg")));
+    }
+
+    @Test
+    public void rename_mergesLinks() {
+        imageDao.insert(new Image("old.jpg", 1), new Image("old.jpg", 2), new Image("new.jpg", 2));
+
+        imageDao.rename("old.jpg", "new.jpg");
+
+        assertThat(imageDao.getImageFilenames(1), is(Collections.singletonList("new.jpg")));
+        assertThat(imageDao.getImageFilenames(2), is(Collections.singletonList("new.jpg")));
+        assertThat(imageDao.getAllImageFilenames(), is(Collections.singletonList("new.jpg")));
+    }
+
+    @Test
+    public void update_replacesLinksOfTransactionOnly() {
+        imageDao.insert(new Image("a.jpg", 1), new Image("b.jpg", 1), new Image("a.jpg", 2));
+
+        imageDao.update(1, Arrays.asList("b.jpg", "c.jpg", "c.jpg"));
+
+        assertThat(new HashSet<>(imageDao.getImageFilenames(1)), is(new HashSet<>(Arrays.asList("b.jpg", "c.jpg"))));
+        assertThat(imageDao.getImageFilenames(2), is(Collections.singletonList("a.jpg")));
+    }
+
+    @Test
+    public void update_null_removesAllLinks() {
+        imageDao.insert(new Image("a.jpg", 1), new Image("b.jpg", 1));
+
+        imageDao.update(1, null);
+
+        assertThat(imageDao.getImageFilenames(1).isEmpty(), is(true));
+    }
+}
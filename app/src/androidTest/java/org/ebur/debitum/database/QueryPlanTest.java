@@ -0,0 +1,118 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks via EXPLAIN QUERY PLAN that the hot queries of TransactionDao are backed by an index,
+ * i.e. that sqlite neither scans the whole txn table nor sorts the rows in a temporary b-tree.
+ * The filtered queries have to seek (SEARCH) into an index; only the person summaries, which
+ * aggregate all transactions, may walk a whole (covering) index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    // older sqlite versions print "SCAN TABLE txn", newer ones "SCAN txn"; a scan through an index
+    // ("SCAN txn USING COVERING INDEX ...") is only acceptable for the person summaries
+    private static final Pattern FULL_SCAN_TXN = Pattern.compile("SCAN (TABLE )?txn(?! USING)");
+    // any walk of txn or one of its indices from start to end
+    private static final Pattern SCAN_TXN = Pattern.compile("SCAN (TABLE )?txn\\b");
+    private static final Pattern SEARCH_TXN_INDEX = Pattern.compile("SEARCH (TABLE )?txn USING (COVERING )?INDEX index_txn_");
+    private static final String TEMP_BTREE = "USE TEMP B-TREE";
+
+    private AppDatabase db;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // without statistics (ANALYZE) sqlite plans for large tables, which is what we are after
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void transactions_useIndex() {
+        assertSearchesIndexWithoutSorting(explain(TransactionDao.QUERY_TRANSACTIONS));
+    }
+
+    @Test
+    public void transactionsOfPerson_useIndex() {
+        assertSearchesIndexWithoutSorting(explain(TransactionDao.QUERY_TRANSACTIONS_OF_PERSON));
+    }
+
+    @Test
+    public void total_usesIndex() {
+        assertSearchesIndexWithoutSorting(explain(TransactionDao.QUERY_TOTAL));
+    }
+
+    @Test
+    public void totalOfPerson_usesIndex() {
+        assertSearchesIndexWithoutSorting(explain(TransactionDao.QUERY_TOTAL_OF_PERSON));
+    }
+
+    @Test
+    public void personSummaries_useIndex() {
+        List<String> plan = explain(TransactionDao.QUERY_PERSON_SUMMARIES);
+        assertNoFullScanOfTxn(plan);
+        // ordering by an aggregate (max(timestamp)) always needs a temporary b-tree, but grouping
+        // must follow the index
+        for (String detail : plan) {
+            assertFalse(plan.toString(), detail.contains(TEMP_BTREE + " FOR GROUP BY"));
+        }
+    }
+
+    private void assertSearchesIndexWithoutSorting(List<String> plan) {
+        boolean searchesIndex = false;
+        for (String detail : plan) {
+            assertFalse(plan.toString(), SCAN_TXN.matcher(detail).find());
+            assertFalse(plan.toString(), detail.contains(TEMP_BTREE));
+            searchesIndex |= SEARCH_TXN_INDEX.matcher(detail).find();
+        }
+        assertTrue(plan.toString(), searchesIndex);
+    }
+
+    private void assertNoFullScanOfTxn(List<String> plan) {
+        for (String detail : plan) {
+            assertFalse(plan.toString(), FULL_SCAN_TXN.matcher(detail).find());
+        }
+    }
+
+    /**
+     * @return the detail column of each row of the query plan; all parameters are bound to null,
+     * which does not influence the plan
+     */
+    private List<String> explain(String query) {
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getReadableDatabase();
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = sqlite.query("EXPLAIN QUERY PLAN " + query)) {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailColumn));
+            }
+        }
+        return details;
+    }
+}
@@ -0,0 +1,96 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.ebur.debitum.util.BackupValidator;
+import org.ebur.debitum.util.InvalidBackupException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that BackupValidator::checkDatabase accepts databases created by room and refuses
+ * everything else.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RestoredDatabaseCheckTest {
+    private static final String DB_NAME = "restored-database-check-test";
+
+    private File dbFile;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbFile = context.getDatabasePath(DB_NAME);
+        AppDatabase db = Room.databaseBuilder(context, AppDatabase.class, DB_NAME)
+                // like the database file in a backup, see AppDatabase::backupDatabase
+                .setJournalMode(RoomDatabase.JournalMode.TRUNCATE)
+                .build();
+        // opening creates the schema
+        db.getOpenHelper().getWritableDatabase();
+        db.close();
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().getTargetContext().deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void checkDatabase_currentVersion() throws InvalidBackupException {
+        BackupValidator.checkDatabase(dbFile, AppDatabase.VERSION, new String[AppDatabase.VERSION + 1]);
+    }
+
+    @Test
+    public void checkDatabase_newerVersion() {
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE)) {
+            db.setVersion(AppDatabase.VERSION + 1);
+        }
+        assertInvalid(InvalidBackupException.NEWER_VERSION, new String[0]);
+    }
+
+    @Test
+    public void checkDatabase_unknownSchema() {
+        String[] identityHashes = new String[AppDatabase.VERSION + 1];
+        identityHashes[AppDatabase.VERSION] = "not the identity hash";
+        assertInvalid(InvalidBackupException.UNKNOWN_SCHEMA, identityHashes);
+    }
+
+    @Test
+    public void checkDatabase_corrupt() throws IOException {
+        // overwrite the pages after the header
+        try (RandomAccessFile file = new RandomAccessFile(dbFile, "rw")) {
+            file.setLength(4096);
+            file.seek(100);
+            file.write(new byte[3000]);
+        }
+        assertInvalid(InvalidBackupException.CORRUPT_DATABASE, new String[AppDatabase.VERSION + 1]);
+    }
+
+    private void assertInvalid(int reason, String[] identityHashes) {
+        try {
+            BackupValidator.checkDatabase(dbFile, AppDatabase.VERSION, identityHashes);
+            fail("InvalidBackupException expected");
+        } catch (InvalidBackupException e) {
+            assertEquals(e.getMessage(), reason, e.reason);
+        }
+    }
+}
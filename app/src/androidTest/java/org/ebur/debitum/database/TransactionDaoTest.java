@@ -0,0 +1,93 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(AndroidJUnit4.class)
+public class TransactionDaoTest {
+
+    // id of the only person, the first one inserted
+    private static final int ID_PERSON = 1;
+    // more ids than fit into a single statement
+    private static final int COUNT = 2 * AppDatabase.MAX_BIND_PARAMETERS + 1;
+
+    private AppDatabase db;
+    private TransactionDao transactionDao;
+    private ImageDao imageDao;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        transactionDao = db.transactionDao();
+        imageDao = db.imageDao();
+        db.personDao().insert(new Person("Alice"));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void deleteByIds_moreThanMaxBindParameters() {
+        List<Integer> ids = insertItems(COUNT);
+        int keptId = insertItems(1).get(0);
+        for (int id : ids) imageDao.insert(new Image(String.format("%08x.jpg", id), id));
+        imageDao.insert(new Image("kept.jpg", keptId));
+
+        int deleted = transactionDao.deleteByIds(ids);
+
+        assertThat(deleted, is(COUNT));
+        assertThat(transactionDao.getTransaction(ids.get(0)), is(nullValue()));
+        assertThat(transactionDao.getTransaction(ids.get(COUNT - 1)), is(nullValue()));
+        assertThat(transactionDao.getTransaction(keptId), is(notNullValue()));
+        assertThat(imageDao.getAllImageFilenames(), is(Collections.singletonList("kept.jpg")));
+    }
+
+    @Test
+    public void markReturnedByIds_moreThanMaxBindParameters() {
+        List<Integer> ids = insertItems(COUNT);
+        int notMarkedId = insertItems(1).get(0);
+        Date timestampReturned = new Date(1000);
+
+        int updated = transactionDao.markReturnedByIds(ids, timestampReturned);
+
+        assertThat(updated, is(COUNT));
+        assertThat(transactionDao.getTransaction(ids.get(0)).transaction.timestampReturned, is(timestampReturned));
+        assertThat(transactionDao.getTransaction(ids.get(COUNT - 1)).transaction.timestampReturned, is(timestampReturned));
+        assertThat(transactionDao.getTransaction(notMarkedId).transaction.timestampReturned, is(nullValue()));
+    }
+
+    // inserts count item transactions and returns their ids
+    private List<Integer> insertItems(int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(new Transaction(ID_PERSON, 1, false, "", new Date(i)));
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        for (long id : transactionDao.insertAll(transactions)) ids.add((int) id);
+        return ids;
+    }
+}
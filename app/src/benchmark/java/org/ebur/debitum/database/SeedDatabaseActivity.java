@@ -0,0 +1,89 @@
+package org.ebur.debitum.database;
+
+import android.database.Cursor;
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.preference.PreferenceManager;
+
+import org.ebur.debitum.BuildConfig;
+import org.ebur.debitum.ui.SettingsFragment;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares the benchmark build for the macrobenchmarks: fills the database with a synthetic ledger
+ * of EXTRA_SIZE transactions and marks the changelog as seen, so it does not pop up during the
+ * measurements. Shows "seeded <size>" when done.
+ * Starting it again with the same size does not add anything, so it can be run before every test.
+ */
+public class SeedDatabaseActivity extends AppCompatActivity {
+
+    public static final String EXTRA_SIZE = "size";
+    private static final int DEFAULT_SIZE = 100_000;
+
+    // same shape as the ledgers of the JMH and database benchmarks
+    private static final int TRANSACTIONS_PER_PERSON = 100;
+    private static final int MONETARY_PERCENTAGE = 80;
+    private static final long START_MS = 1_500_000_000_000L;
+    private static final int DAYS = 5 * 365;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        TextView statusView = new TextView(this);
+        statusView.setText("seeding");
+        setContentView(statusView);
+
+        PreferenceManager.getDefaultSharedPreferences(this).edit()
+                .putInt(SettingsFragment.PREF_KEY_CHANGELOG, BuildConfig.VERSION_CODE)
+                .apply();
+
+        int size = getIntent().getIntExtra(EXTRA_SIZE, DEFAULT_SIZE);
+        AppDatabase db = AppDatabase.getDatabase(getApplicationContext());
+        AppDatabase.databaseTaskExecutor.execute(() -> {
+            seed(db, size);
+            runOnUiThread(() -> statusView.setText("seeded " + size));
+        });
+    }
+
+    private static void seed(@NonNull AppDatabase db, int size) {
+        int existing = countTransactions(db);
+        if (existing >= size) return;
+
+        int count = size - existing;
+        Random random = new Random(size);
+        int personCount = Math.max(1, count / TRANSACTIONS_PER_PERSON);
+        Person[] newPersons = new Person[personCount];
+        for (int i = 0; i < personCount; i++) {
+            newPersons[i] = new Person("Person " + (existing + i + 1));
+        }
+        db.personDao().insert(newPersons);
+        List<Person> persons = db.personDao().getAllPersonsNonLive();
+
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Person person = persons.get(random.nextInt(persons.size()));
+            boolean isMonetary = random.nextInt(100) < MONETARY_PERCENTAGE;
+            int amount = isMonetary
+                    ? random.nextInt(200_000) - 100_000
+                    : (random.nextBoolean() ? 1 : -1) * (random.nextInt(5) + 1);
+            Date timestamp = new Date(START_MS + TimeUnit.DAYS.toMillis(random.nextInt(DAYS)));
+            transactions.add(new Transaction(person.idPerson, amount, isMonetary,
+                    "Transaction " + (existing + i), timestamp));
+        }
+        db.transactionDao().insertAll(transactions);
+    }
+
+    private static int countTransactions(@NonNull AppDatabase db) {
+        try (Cursor cursor = db.query("select count(*) from txn", null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+}
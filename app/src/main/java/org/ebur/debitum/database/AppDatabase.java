@@ -1,7 +1,10 @@
 package org.ebur.debitum.database;
 
 import android.content.Context;
-import android.net.Uri;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -13,20 +16,39 @@ import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import org.ebur.debitum.R;
+import org.ebur.debitum.util.BackupValidator;
 import org.ebur.debitum.util.FileUtils;
+import org.ebur.debitum.util.InvalidBackupException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Database(
         entities = {Transaction.class, Person.class, Image.class},
-        version = 6,
+        version = AppDatabase.VERSION,
         exportSchema = true
 )
 @TypeConverters({Converters.class})
 public abstract class AppDatabase extends RoomDatabase {
+    static final int VERSION = 8;
+
+    // schema identity hashes room stores in room_master_table, by database version (see
+    // app/schemas), used to recognize debitum databases when restoring. The current version's
+    // hash is taken from the live database.
+    private static final String[] IDENTITY_HASHES = {
+            null,
+            "69e07038d187ce122a1eb7b7579052af",
+            "d97f21253a9df79802db702783561bde",
+            "21db86f32366377088649db5a5c26aa2",
+            "05af5065ffc7e3607752f0640e5574fe",
+            "226bdcef58bad58309a92571f15789d2",
+            "226bdcef58bad58309a92571f15789d2",
+            "797e8e9407093c6924f0734582f93078"
+    };
+
     public abstract TransactionDao transactionDao();
     public abstract PersonDao personDao();
     public abstract ImageDao imageDao();
@@ -36,13 +58,16 @@ public abstract class AppDatabase extends RoomDatabase {
 
     private static File dbFile;
     private static String backupFileNotFoundMessage;
-    private Context context;
 
     // create an ExecutorService with a fixed thread pool that will be used to run database operations asynchronously on a background thread
     private static final int NUMBER_OF_THREADS = 4;
     static final ExecutorService databaseTaskExecutor =
             Executors.newFixedThreadPool(NUMBER_OF_THREADS);
 
+    // sqlite versions before 3.32 (Android < 11) allow at most 999 bound parameters per
+    // statement, so batch operations have to split up their "in (:ids)" lists
+    static final int MAX_BIND_PARAMETERS = 999;
+
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
@@ -82,6 +107,63 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // index_txn_id_person is superseded by index_txn_id_person_is_monetary_timestamp_amount
+            database.execSQL("DROP INDEX IF EXISTS index_txn_id_person");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_txn_is_monetary_timestamp "
+                    + "ON txn (is_monetary, timestamp)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_txn_id_person_is_monetary_timestamp_amount "
+                    + "ON txn (id_person, is_monetary, timestamp, amount)");
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE txn "
+                    + " ADD COLUMN image_count INTEGER NOT NULL DEFAULT(0)");
+            // has_images was maintained by the app so far, recompute both once
+            database.execSQL("UPDATE txn SET "
+                    + "image_count = (SELECT count(*) FROM image WHERE image.id_transaction = txn.id_transaction), "
+                    + "has_images = EXISTS (SELECT 1 FROM image WHERE image.id_transaction = txn.id_transaction)");
+            createImageCountTriggers(database);
+        }
+    };
+
+    // new databases do not run any migration
+    static final Callback CREATE_TRIGGERS_CALLBACK = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            createImageCountTriggers(db);
+        }
+    };
+
+    /**
+     * Creates the triggers that keep txn.image_count and txn.has_images in line with the image
+     * table. Links are counted incrementally. As the app writes whole transaction rows (with
+     * possibly outdated values), both columns are recounted whenever a transaction is inserted or
+     * they are updated.
+     */
+    static void createImageCountTriggers(@NonNull SupportSQLiteDatabase database) {
+        String count = "(SELECT count(*) FROM image WHERE image.id_transaction = NEW.id_transaction)";
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS image_count_insert AFTER INSERT ON image "
+                + "BEGIN UPDATE txn SET image_count = image_count + 1, has_images = 1 "
+                + "WHERE id_transaction = NEW.id_transaction; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS image_count_delete AFTER DELETE ON image "
+                + "BEGIN UPDATE txn SET image_count = image_count - 1, has_images = image_count > 1 "
+                + "WHERE id_transaction = OLD.id_transaction; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS image_count_txn_insert AFTER INSERT ON txn "
+                + "WHEN NEW.image_count IS NOT " + count + " OR NEW.has_images IS NOT (" + count + " > 0) "
+                + "BEGIN UPDATE txn SET image_count = " + count + ", has_images = " + count + " > 0 "
+                + "WHERE id_transaction = NEW.id_transaction; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS image_count_txn_update AFTER UPDATE OF image_count, has_images ON txn "
+                + "WHEN NEW.image_count IS NOT " + count + " OR NEW.has_images IS NOT (" + count + " > 0) "
+                + "BEGIN UPDATE txn SET image_count = " + count + ", has_images = " + count + " > 0 "
+                + "WHERE id_transaction = NEW.id_transaction; END");
+    }
+
     /* returns the singleton. It'll create the database the first time it's accessed, using Room's
      * database builder to create a RoomDatabase object
      */
@@ -91,16 +173,20 @@ public abstract class AppDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "transaction_database")
-                            .setJournalMode(JournalMode.TRUNCATE) // to make export easier, might have negative implications on write performance
+                            // backupDatabase takes care of the wal file, so readers are not
+                            // blocked by writers and commits need less fsyncs
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                             .addMigrations(
                                     MIGRATION_1_2,
                                     MIGRATION_2_3,
                                     MIGRATION_3_4,
                                     MIGRATION_4_5,
-                                    MIGRATION_5_6
+                                    MIGRATION_5_6,
+                                    MIGRATION_6_7,
+                                    MIGRATION_7_8
                             )
+                            .addCallback(CREATE_TRIGGERS_CALLBACK)
                             .build();
-                    INSTANCE.context = context;
                 }
             }
         }
@@ -113,6 +199,9 @@ public abstract class AppDatabase extends RoomDatabase {
     // ---------------------
     // Backup and restore DB
     // ---------------------
+    // suffixes of the files sqlite creates next to the database file in WAL mode
+    private static final String[] WAL_FILE_SUFFIXES = {"-wal", "-shm"};
+
     public static void backupDatabase(@NonNull String filename, @NonNull String path, @Nullable OnBackupRestoreFinishListener onBackupRestoreFinishListener){
         boolean success = false;
         String message = "";
@@ -123,10 +212,20 @@ public abstract class AppDatabase extends RoomDatabase {
             if(backupFile.getParentFile() != null
                     && (backupFile.getParentFile().exists()
                     || backupFile.getParentFile().mkdirs())) {
-                FileUtils.copyFile(dbFile, backupFile);
+                // both ways below need an empty destination
+                backupFile.delete();
+                deleteWalFiles(backupFile);
+                SupportSQLiteDatabase db = INSTANCE.getOpenHelper().getWritableDatabase();
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    // sqlite >= 3.27 writes a consistent snapshot of the database (including
+                    // what is still in the wal file) to a new file, without blocking writers
+                    db.execSQL("VACUUM INTO ?", new Object[]{backupFile.getAbsolutePath()});
+                } else {
+                    copyDatabaseFiles(db, backupFile);
+                }
                 success = true;
             }
-        } catch (IOException e) {
+        } catch (IOException | SQLException e) {
             message = e.getMessage();
         } finally {
             if(onBackupRestoreFinishListener != null)
@@ -134,35 +233,96 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     }
 
-    public static void restoreDatabase(@NonNull String filename, @NonNull String path, @Nullable OnBackupRestoreFinishListener onBackupRestoreFinishListener) {
-        // TODO check if uri points to valid debitum database
-        boolean success = false;
-        String message = "";
-        File backupFile = new File(path, filename);
-
+    // copies the database file together with its wal file, while holding the write lock so no
+    // transaction can be committed or checkpointed in between, and afterwards merges the copied
+    // wal file into the copied database file, so backupFile is a self-contained database
+    private static void copyDatabaseFiles(@NonNull SupportSQLiteDatabase db, @NonNull File backupFile) throws IOException {
+        File walFile = new File(dbFile.getPath() + "-wal");
+        File backupWalFile = new File(backupFile.getPath() + "-wal");
+        db.beginTransaction();
         try {
-            if(backupFile.exists()) {
-                FileUtils.copyFile(backupFile, dbFile);
-                success = true;
-            } else {
-                message = backupFileNotFoundMessage;
+            FileUtils.copyFile(dbFile, backupFile);
+            if (walFile.exists()) {
+                FileUtils.copyFile(walFile, backupWalFile);
             }
-        } catch (IOException e) {
-            message = e.getMessage();
         } finally {
-            if(onBackupRestoreFinishListener != null)
-                onBackupRestoreFinishListener.onFinished(success, message);
+            db.endTransaction();
+        }
+
+        // opening the copy replays its wal file, switching from WAL to DELETE journal mode then
+        // writes the replayed pages into the database file
+        try (SQLiteDatabase backupDb = SQLiteDatabase.openDatabase(backupFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+             Cursor cursor = backupDb.rawQuery("PRAGMA journal_mode=DELETE", null)) {
+            cursor.moveToFirst();
+        }
+        deleteWalFiles(backupFile);
+    }
+
+    // the database must not be open while its files are replaced, else the open connections
+    // (and a stale wal file) would overwrite or corrupt the restored database
+    private static void closeForRestore() {
+        synchronized (AppDatabase.class) {
+            if (INSTANCE != null) {
+                INSTANCE.close();
+                INSTANCE = null;
+            }
         }
+        deleteWalFiles(dbFile);
     }
 
-    public static void restoreDatabase(@NonNull Uri uri, @Nullable OnBackupRestoreFinishListener onBackupRestoreFinishListener) {
-        // TODO check if uri points to valid debitum database
+    private static void deleteWalFiles(@NonNull File databaseFile) {
+        for (String suffix : WAL_FILE_SUFFIXES) {
+            new File(databaseFile.getPath() + suffix).delete();
+        }
+    }
+
+    /**
+     * Checks that restoredDbFile is an intact debitum database this app version can open (older
+     * versions are migrated when opened), without modifying it or the live database.
+     * @throws InvalidBackupException if it is not
+     */
+    public static void checkRestoredDatabase(@NonNull File restoredDbFile) throws InvalidBackupException {
+        String[] identityHashes = Arrays.copyOf(IDENTITY_HASHES, VERSION + 1);
+        identityHashes[VERSION] = getIdentityHash();
+        BackupValidator.checkDatabase(restoredDbFile, VERSION, identityHashes);
+    }
+
+    // the schema identity hash of the live database
+    @Nullable
+    private static String getIdentityHash() {
+        try (Cursor cursor = INSTANCE.getOpenHelper().getReadableDatabase()
+                .query("SELECT identity_hash FROM room_master_table WHERE id = 42")) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return where to stage a database to be restored with replaceDatabase, on the same file
+     * system as the database so it can be moved into place by renaming
+     */
+    @NonNull
+    public static File getRestoreStagingFile() {
+        return new File(dbFile.getPath() + "-restore");
+    }
+
+    /**
+     * Replaces the database by restoredDbFile, which is moved (not copied) if it is on the same
+     * file system (see getRestoreStagingFile). It has to be checked with checkRestoredDatabase
+     * before.
+     */
+    public static void replaceDatabase(@NonNull File restoredDbFile, @Nullable OnBackupRestoreFinishListener onBackupRestoreFinishListener) {
         boolean success = false;
         String message = "";
 
         try {
-            if(true) { // TODO check if uri is valid
-                FileUtils.copyFile(uri, dbFile, INSTANCE.context.getContentResolver());
+            if (restoredDbFile.exists()) {
+                closeForRestore();
+                if (!restoredDbFile.renameTo(dbFile)) {
+                    FileUtils.copyFile(restoredDbFile, dbFile);
+                    restoredDbFile.delete();
+                }
                 success = true;
             } else {
                 message = backupFileNotFoundMessage;
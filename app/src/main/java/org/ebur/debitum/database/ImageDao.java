@@ -1,12 +1,20 @@
 package org.ebur.debitum.database;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.Transaction;
 
+import org.ebur.debitum.util.Utilities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 @Dao
 public abstract class ImageDao {
@@ -20,24 +28,55 @@ public abstract class ImageDao {
     @Insert
     abstract void insert(Image... images);
 
-    // returns a boolean so that ImageRepository can use a Future to enforce that the image links
-    // are updated before deleteOrphanedImages is called in EditTransactionViewModel
+    // replaces the links of the transaction by filenames, touching only the rows of removed and
+    // added filenames
     @Transaction
-    boolean update(int idTransaction, @Nullable List<String> filenames) {
-        // first delete all images of the transaction
-        deleteAllImagesOfTransaction(idTransaction);
-        // then add all images from the passed list
-        if (filenames != null) {
-            for (String filename : filenames) {
-                insert(new Image(filename, idTransaction));
-            }
+    void update(int idTransaction, @Nullable List<String> filenames) {
+        Set<String> newFilenames = filenames == null ? Collections.emptySet() : new LinkedHashSet<>(filenames);
+        List<String> oldFilenames = getImageFilenames(idTransaction);
+
+        List<String> removed = new ArrayList<>();
+        for (String filename : oldFilenames) {
+            if (!newFilenames.contains(filename)) removed.add(filename);
         }
-        return true;
+        for (List<String> chunk : Utilities.partition(removed, AppDatabase.MAX_BIND_PARAMETERS - 1)) {
+            deleteImagesOfTransaction(idTransaction, chunk);
+        }
+
+        Set<String> unchanged = new HashSet<>(oldFilenames);
+        List<Image> added = new ArrayList<>();
+        for (String filename : newFilenames) {
+            if (!unchanged.contains(filename)) added.add(new Image(filename, idTransaction));
+        }
+        // a single prepared statement for all rows
+        if (!added.isEmpty()) insert(added.toArray(new Image[0]));
+    }
+
+    @Query("delete from image where id_transaction = :idTransaction and filename in (:filenames)")
+    abstract void deleteImagesOfTransaction(int idTransaction, List<String> filenames);
+
+    // moves all links of oldFilename to newFilename, except for transactions linking both, whose
+    // link to oldFilename is just deleted
+    @Transaction
+    void rename(@NonNull String oldFilename, @NonNull String newFilename) {
+        renameOrIgnore(oldFilename, newFilename);
+        deleteLinks(oldFilename);
     }
 
-    @Query("delete from image where id_transaction = :idTransaction")
-    abstract void deleteAllImagesOfTransaction(int idTransaction);
+    @Query("update or ignore image set filename = :newFilename where filename = :oldFilename")
+    abstract void renameOrIgnore(String oldFilename, String newFilename);
+
+    @Query("delete from image where filename = :filename")
+    abstract void deleteLinks(String filename);
+
+    @Query("delete from image where filename in (:filenames)")
+    abstract void deleteLinksChunk(List<String> filenames);
 
-    @Query("delete from image where filename not in (:existingFiles)")
-    public abstract void deleteBrokenImageLinks(List<String> existingFiles);
+    // delete all links of the given files, e.g. because the files do not exist
+    @Transaction
+    void deleteLinks(List<String> filenames) {
+        for (List<String> chunk : Utilities.partition(filenames, AppDatabase.MAX_BIND_PARAMETERS)) {
+            deleteLinksChunk(chunk);
+        }
+    }
 }
@@ -0,0 +1,234 @@
+package org.ebur.debitum.database;
+
+import android.app.Application;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.ebur.debitum.util.ImageStore;
+import org.ebur.debitum.util.ThumbnailLoader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes image files that are not linked to any transaction anymore (orphaned images) and image
+ * links whose file does not exist (broken links).
+ *
+ * Runs on a low priority background thread. Requests are coalesced and rate-limited: a run
+ * starts at least DELAY_MS after it was requested and at least MIN_INTERVAL_MS after the last
+ * run, all requests in the meantime are served by that single run. Orphaned and broken images
+ * are determined as set differences between the image table and the image directory.
+ */
+public class ImageGarbageCollector implements ImageStore.Pins {
+
+    private static final String TAG = "ImageGarbageCollector";
+    private static final long DELAY_MS = 2_000;
+    private static final long MIN_INTERVAL_MS = 30_000;
+    // temporary files of imports that have been interrupted (e.g. by the app being killed)
+    private static final long STALE_TEMP_FILE_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private static volatile ImageGarbageCollector INSTANCE;
+
+    public static class Stats {
+        public final int orphansDeleted;
+        public final long bytesReclaimed;
+        public final int brokenLinksDeleted;
+        public final long durationMs;
+
+        Stats(int orphansDeleted, long bytesReclaimed, int brokenLinksDeleted, long durationMs) {
+            this.orphansDeleted = orphansDeleted;
+            this.bytesReclaimed = bytesReclaimed;
+            this.brokenLinksDeleted = brokenLinksDeleted;
+            this.durationMs = durationMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "deleted " + orphansDeleted + " orphaned images (" + bytesReclaimed + " bytes) and "
+                    + brokenLinksDeleted + " broken links in " + durationMs + " ms";
+        }
+    }
+
+    // the database is not kept, as a restore replaces it while the app keeps running
+    private final Application application;
+    private final ThumbnailLoader thumbnailLoader;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    // guarded by this
+    @Nullable private File scheduledImageDir;
+    private long lastRunMs = -MIN_INTERVAL_MS;
+    private int suspended;
+    // images that are in use, but not (yet) linked in the database, e.g. just imported ones
+    private final Set<String> pinned = new HashSet<>();
+    // images unpinned recently, whose links might have been committed after the current run
+    // read them, so they are protected until the next run
+    private final Set<String> released = new HashSet<>();
+    @Nullable private volatile Stats lastStats;
+
+    private ImageGarbageCollector(@NonNull Application application) {
+        this.application = application;
+        thumbnailLoader = ThumbnailLoader.getInstance(application);
+    }
+
+    @NonNull
+    public static ImageGarbageCollector getInstance(@NonNull Application application) {
+        if (INSTANCE == null) {
+            synchronized (ImageGarbageCollector.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ImageGarbageCollector(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Requests a run for imageDir, unless one is scheduled already.
+     */
+    public synchronized void schedule(@NonNull File imageDir) {
+        if (scheduledImageDir != null) return;
+        scheduledImageDir = imageDir;
+        long delay = Math.max(DELAY_MS, lastRunMs + MIN_INTERVAL_MS - SystemClock.elapsedRealtime());
+        executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Prevents runs until resume is called, e.g. while the database and images are replaced by a
+     * restore and thus inconsistent. Requests in the meantime are deferred.
+     */
+    public synchronized void suspend() {
+        suspended++;
+    }
+
+    public synchronized void resume() {
+        if (suspended > 0) suspended--;
+    }
+
+    /**
+     * Protects filename from being deleted as orphan until it is unpinned
+     */
+    @Override
+    public synchronized void pin(@NonNull String filename) {
+        pinned.add(filename);
+    }
+
+    /**
+     * Releases images pinned before, which must be linked in the database by now if they are
+     * still needed
+     */
+    @Override
+    public synchronized void unpin(@NonNull Collection<String> filenames) {
+        for (String filename : filenames) {
+            if (pinned.remove(filename)) released.add(filename);
+        }
+    }
+
+    /**
+     * Deletes file unless it is pinned or was released after the current run started. Holds the
+     * lock while deleting, so an image pinned before it is looked up (see ImageStore::store) is
+     * either protected or already gone.
+     */
+    private synchronized boolean deleteIfUnprotected(@NonNull File file, @NonNull Set<String> releasedBefore) {
+        String filename = file.getName();
+        boolean isProtected = pinned.contains(filename) || released.contains(filename) && !releasedBefore.contains(filename);
+        return !isProtected && file.delete();
+    }
+
+    /**
+     * @return statistics of the last run, null if there was none yet
+     */
+    @Nullable
+    public Stats getLastStats() {
+        return lastStats;
+    }
+
+    private void run() {
+        File imageDir;
+        Set<String> releasedBefore;
+        synchronized (this) {
+            imageDir = scheduledImageDir;
+            if (imageDir == null) return;
+            if (suspended > 0) {
+                executor.schedule(this::run, MIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            scheduledImageDir = null;
+            lastRunMs = SystemClock.elapsedRealtime();
+            releasedBefore = new HashSet<>(released);
+        }
+
+        try {
+            Stats stats = collect(imageDir, releasedBefore);
+            lastStats = stats;
+            Log.i(TAG, stats.toString());
+            synchronized (this) {
+                // their links were committed before this run read them
+                released.removeAll(releasedBefore);
+            }
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Could not collect images: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @NonNull
+    private Stats collect(@NonNull File imageDir, @NonNull Set<String> releasedBefore) throws ExecutionException, InterruptedException {
+        long start = SystemClock.elapsedRealtime();
+        File[] files = imageDir.listFiles();
+        // files would be null, if imageDir does not denote a directory, or if an I/O error
+        // occurs. Then nothing can be said about orphaned or broken images.
+        if (files == null) return new Stats(0, 0, 0, 0);
+
+        ImageDao imageDao = AppDatabase.getDatabase(application).imageDao();
+        Set<String> linked = new HashSet<>(AppDatabase.databaseTaskExecutor.submit(imageDao::getAllImageFilenames).get());
+        Set<String> existing = new HashSet<>(files.length);
+        int orphansDeleted = 0;
+        long bytesReclaimed = 0;
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            String filename = file.getName();
+            // e.g. the staging directory of a restore
+            if (!file.isFile()) continue;
+            if (ImageStore.isTemporary(filename)) {
+                if (now - file.lastModified() > STALE_TEMP_FILE_AGE_MS) file.delete();
+                continue;
+            }
+            existing.add(filename);
+            if (!linked.contains(filename)) {
+                long length = file.length();
+                if (deleteIfUnprotected(file, releasedBefore)) {
+                    thumbnailLoader.evict(file);
+                    orphansDeleted++;
+                    bytesReclaimed += length;
+                }
+            }
+        }
+
+        List<String> broken = new ArrayList<>();
+        for (String filename : linked) {
+            // files might have been added since listing the directory
+            if (!existing.contains(filename) && !new File(imageDir, filename).exists()) broken.add(filename);
+        }
+        if (!broken.isEmpty()) {
+            AppDatabase.databaseTaskExecutor.submit(() -> imageDao.deleteLinks(broken)).get();
+        }
+        return new Stats(orphansDeleted, bytesReclaimed, broken.size(), SystemClock.elapsedRealtime() - start);
+    }
+}
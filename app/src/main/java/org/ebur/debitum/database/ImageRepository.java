@@ -1,18 +1,33 @@
 package org.ebur.debitum.database;
 
 import android.app.Application;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.ebur.debitum.util.FileUtils;
+import org.ebur.debitum.util.ImageStore;
+
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
 
 public class ImageRepository {
 
+    private static final String TAG = "ImageRepository";
+    // hashing legacy images may take a while, so it must not block the database executor
+    private static final ExecutorService migrationExecutor = Executors.newSingleThreadExecutor();
+    // link updates run asynchronously, a single thread guarantees that a transaction's links are
+    // read only after they have been updated
+    private static final ExecutorService linkExecutor = Executors.newSingleThreadExecutor();
+
+    private final Application application;
     private final ImageDao imageDao;
 
     // Note that in order to unit test the Repository, you have to remove the Application
@@ -20,6 +35,7 @@ public class ImageRepository {
     // See the BasicSample in the android-architecture-components repository at
     // https://github.com/googlesamples
     public ImageRepository(Application application) {
+        this.application = application;
         AppDatabase db = AppDatabase.getDatabase(application);
         imageDao = db.imageDao();
     }
@@ -38,7 +54,7 @@ public class ImageRepository {
 
     @Nullable
     public List<String> getImageFilenames(int idTransaction) {
-        Future<List<String>> future = AppDatabase.databaseTaskExecutor.submit(() -> imageDao.getImageFilenames(idTransaction));
+        Future<List<String>> future = linkExecutor.submit(() -> imageDao.getImageFilenames(idTransaction));
         try {
             return future.get();
         } catch (ExecutionException | InterruptedException e) {
@@ -53,23 +69,73 @@ public class ImageRepository {
         });
     }
 
-    public void deleteBrokenImageLinks(@NonNull List<File> existingFiles) {
-        List<String> existingFilenames = existingFiles
-                .stream()
-                .map(File::getName)
-                .collect(Collectors.toList());
-        AppDatabase.databaseTaskExecutor.execute(() -> {
-            imageDao.deleteBrokenImageLinks(existingFilenames);
+    /**
+     * Renames all images with legacy (sequential) filenames that are linked to a transaction to
+     * their content-addressed name (see ImageStore), merging identical images, and updates their
+     * links. Runs in the background, the legacy files are left for the ImageGarbageCollector, so
+     * an interrupted migration simply continues on the next call.
+     */
+    public void migrateLegacyImages(@NonNull File imageDir) {
+        ImageGarbageCollector garbageCollector = ImageGarbageCollector.getInstance(application);
+        migrationExecutor.execute(() -> {
+            List<String> linked = imageDao.getAllImageFilenames();
+            boolean migrated = false;
+            for (String filename : linked) {
+                if (ImageStore.isContentAddressed(filename)) continue;
+                File legacyImage = new File(imageDir, filename);
+                if (!legacyImage.isFile()) continue;
+                String newFilename = null;
+                try {
+                    String sha256 = ImageStore.sha256(legacyImage);
+                    String extension = ImageStore.getExtension(filename);
+                    newFilename = ImageStore.getFilename(sha256, extension);
+                    // the new file is not linked until the rename is committed, so it must not be
+                    // collected as orphan in the meantime
+                    garbageCollector.pin(newFilename);
+                    if (!new File(imageDir, newFilename).isFile()) {
+                        // copy instead of rename, so the legacy file stays valid until its links
+                        // are updated
+                        File tmpFile = ImageStore.createTempFile(imageDir);
+                        FileUtils.copyFile(legacyImage, tmpFile);
+                        ImageStore.store(tmpFile, sha256, extension, imageDir);
+                    }
+                    String renamedTo = newFilename;
+                    AppDatabase.databaseTaskExecutor.submit(() -> imageDao.rename(filename, renamedTo)).get();
+                    migrated = true;
+                } catch (IOException | ExecutionException e) {
+                    Log.w(TAG, "Could not migrate image " + filename + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    if (newFilename != null) garbageCollector.unpin(Collections.singletonList(newFilename));
+                }
+            }
+            if (migrated) garbageCollector.schedule(imageDir);
         });
     }
 
-    public boolean update(int idTransaction, @Nullable List<String> filenames) {
-        Future<Boolean> future = AppDatabase.databaseTaskExecutor.submit(() -> imageDao.update(idTransaction, filenames));
-        try {
-            return future.get();
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace();
-            return false;
-        }
+    /**
+     * Replaces the image links of the transaction by filenames in the background and returns
+     * immediately. Reads of a transaction's links (getImageFilenames) wait for pending updates.
+     * @param onImagesUpdatedListener called from a background thread when the links are updated
+     */
+    public void update(int idTransaction, @Nullable List<String> filenames, @Nullable OnImagesUpdatedListener onImagesUpdatedListener) {
+        linkExecutor.execute(() -> {
+            boolean success;
+            try {
+                imageDao.update(idTransaction, filenames);
+                success = true;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                success = false;
+            }
+            if (onImagesUpdatedListener != null)
+                onImagesUpdatedListener.onUpdated(success);
+        });
+    }
+
+    public interface OnImagesUpdatedListener {
+        void onUpdated(boolean success);
     }
 }
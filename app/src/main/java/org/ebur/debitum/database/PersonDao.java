@@ -7,6 +7,8 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 import androidx.room.Update;
 
+import org.ebur.debitum.util.Utilities;
+
 import java.util.List;
 
 @Dao
@@ -46,7 +48,7 @@ public abstract class PersonDao {
 
     // delete a Person and all of their transactions and image links
     // note: there is no need to delete the image files here, as they are deleted upon the next
-    // dismissed or saved transaction, when EditTransactionViewModel::deleteOrphanedImageFiles
+    // dismissed or saved transaction, by ImageGarbageCollector
     @Transaction
     void delete(Person person) {
         int id = person.idPerson;
@@ -54,4 +56,25 @@ public abstract class PersonDao {
         deleteTransactionsOfPerson(id);
         deletePerson(id);
     }
+
+    @Query("delete from image " +
+            "where id_transaction in (select id_transaction from txn where id_person in (:idPersons))")
+    abstract void deleteImagesOfPersons(List<Integer> idPersons);
+
+    @Query("delete from txn where id_person in (:idPersons)")
+    abstract void deleteTransactionsOfPersons(List<Integer> idPersons);
+
+    @Query("delete from person where id_person in (:idPersons)")
+    abstract void deletePersons(List<Integer> idPersons);
+
+    // delete Persons and all of their transactions and image links in a single transaction,
+    // see delete(Person)
+    @Transaction
+    void deleteByIds(List<Integer> idPersons) {
+        for (List<Integer> ids : Utilities.partition(idPersons, AppDatabase.MAX_BIND_PARAMETERS)) {
+            deleteImagesOfPersons(ids);
+            deleteTransactionsOfPersons(ids);
+            deletePersons(ids);
+        }
+    }
 }
@@ -51,6 +51,12 @@ public class PersonRepository {
         });
     }
 
+    public void deleteByIds(List<Integer> idPersons) {
+        AppDatabase.databaseTaskExecutor.execute(() -> {
+            personDao.deleteByIds(idPersons);
+        });
+    }
+
     public int getPersonId(String name) throws ExecutionException, InterruptedException {
         Future<Integer> future = AppDatabase.databaseTaskExecutor.submit( () -> personDao.getPersonId(name));
         return future.get();
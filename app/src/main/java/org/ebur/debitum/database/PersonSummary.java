@@ -0,0 +1,113 @@
+package org.ebur.debitum.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+import org.ebur.debitum.viewModel.ListOrderViewModel;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A Person together with the aggregated values of all of their transactions, as calculated by
+ * SQLite in TransactionDao::getAllPersonSummaries. Unlike PersonWithTransactions no Transaction
+ * objects need to be loaded to show the person sum list.
+ */
+public class PersonSummary {
+
+    @Embedded
+    public Person person;
+    // sum of all monetary transactions' amounts
+    @ColumnInfo(name = "sum") public int sum;
+    // sum of |amount| of all non-monetary transactions
+    @ColumnInfo(name = "number_of_items") public int numberOfItems;
+    @ColumnInfo(name = "last_timestamp") public Date lastTimestamp;
+    @ColumnInfo(name = "txn_count") public int txnCount;
+
+    public PersonSummary(Person person, int sum, int numberOfItems, Date lastTimestamp, int txnCount) {
+        this.person = person;
+        this.sum = sum;
+        this.numberOfItems = numberOfItems;
+        this.lastTimestamp = lastTimestamp;
+        this.txnCount = txnCount;
+    }
+
+    // needed for Comparator in PersonSumListFragment (sorting)
+    public String getName() {
+        return this.person.name;
+    }
+
+    public int getSum() {
+        return sum;
+    }
+
+    public int getNumberOfItems() {
+        return numberOfItems;
+    }
+
+    public Date getLastTxnTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return -1 if sum<0, 0 if sum==0, 1 if sum>0
+     */
+    public int getSumSign() {
+        return Integer.compare(sum, 0);
+    }
+
+    public boolean equals(PersonSummary ps) {
+        return ps.person.equals(this.person)
+                && ps.sum == this.sum
+                && ps.numberOfItems == this.numberOfItems
+                && ps.txnCount == this.txnCount
+                && ((ps.lastTimestamp == null && this.lastTimestamp == null)
+                    || (ps.lastTimestamp != null && ps.lastTimestamp.equals(this.lastTimestamp)));
+    }
+
+    /**
+     * @param orderBy one of ListOrderViewModel.ORDER_NAME, ORDER_DATE or ORDER_AMOUNT, ordering by
+     *                date if it is none of them
+     * @return the comparator the person sum list is sorted with
+     */
+    public static Comparator<PersonSummary> getComparator(int orderBy, boolean ascending) {
+        Comparator<PersonSummary> comparator;
+        switch (orderBy) {
+            case ListOrderViewModel.ORDER_NAME:
+                comparator = Comparator.comparing(PersonSummary::getName);
+                break;
+            case ListOrderViewModel.ORDER_AMOUNT:
+                comparator = Comparator.comparing(PersonSummary::getSum);
+                break;
+            case ListOrderViewModel.ORDER_DATE:
+            default:
+                comparator = Comparator.comparing(PersonSummary::getLastTxnTimestamp);
+        }
+        return ascending ? comparator : comparator.reversed();
+    }
+
+    /**
+     * @param personSummaries List of PersonSummary
+     * @return The sum of all monetary transactions of all persons in the given List
+     */
+    public static int getSum(List<PersonSummary> personSummaries) {
+        int sum = 0;
+        for (PersonSummary ps : personSummaries) {
+            sum += ps.sum;
+        }
+        return sum;
+    }
+
+    /**
+     * @param personSummaries List of PersonSummary
+     * @return number of all lent items of all persons in the given List
+     */
+    public static int getNumberOfItems(List<PersonSummary> personSummaries) {
+        int sum = 0;
+        for (PersonSummary ps : personSummaries) {
+            sum += ps.numberOfItems;
+        }
+        return sum;
+    }
+}
@@ -7,6 +7,8 @@ import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import org.ebur.debitum.util.MonetaryFormatter;
+
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -18,7 +20,16 @@ import java.util.Locale;
                             parentColumns = "id_person",
                             childColumns= "id_person")
         },
-        indices = { @Index("id_person") })
+        // - is_monetary/timestamp: transaction lists of all persons, ordered by timestamp
+        // - id_person/is_monetary/timestamp: transaction lists of a single person, also covers
+        //   the foreign key; amount is included so the person sums can be calculated from the
+        //   index alone (TransactionDao.getAllPersonSummaries)
+        // sqlite can traverse an index backwards, so no descending index is needed for
+        // "order by timestamp desc"
+        indices = {
+                @Index({"is_monetary", "timestamp"}),
+                @Index({"id_person", "is_monetary", "timestamp", "amount"})
+        })
 public class Transaction {
 
     public final static int TYPE_MONEY = 0;
@@ -54,7 +65,10 @@ public class Transaction {
     @ColumnInfo(name = "is_monetary") public boolean isMonetary; // True for money, false for things
     @ColumnInfo(name = "timestamp") public Date timestamp;  // timestamp when the transaction took place
     @ColumnInfo(name = "timestamp_returned") public Date timestampReturned;  // timestamp when the item was returned
+    // has_images and image_count are maintained by triggers on the image table, see
+    // AppDatabase::createImageCountTriggers, values set here are not stored
     @ColumnInfo(name = "has_images") public boolean hasImages; // if this txn has images (needed for icon in transaction list)
+    @ColumnInfo(name = "image_count") public int imageCount; // number of images linked to this txn
 
     public Date getTimestamp() {
         return timestamp;
@@ -90,7 +104,8 @@ public class Transaction {
                 ((!this.isReturned() && !t.isReturned()) ||
                     (this.isReturned() && this.timestampReturned.equals(t.timestampReturned))
                 ) &&
-                this.hasImages == t.hasImages;
+                this.hasImages == t.hasImages &&
+                this.imageCount == t.imageCount;
     }
 
     //---------------------
@@ -109,14 +124,7 @@ public class Transaction {
      * @return Returns a properly formatted Amount (0-3 decimal places, decimal separator from locale)
      */
     public static String formatMonetaryAmount(int amount, int decimals, Locale locale) {
-        if(decimals < 0 || decimals > 3) {
-            throw new IllegalArgumentException("decimals must be an integer between 0 and 3");
-        }
-        return String.format(
-                locale,
-                "%,."+decimals+"f",
-                amount/Math.pow(10.0, decimals)
-        );
+        return MonetaryFormatter.getInstance(locale).format(amount, decimals);
     }
 
     /**
@@ -1,6 +1,7 @@
 package org.ebur.debitum.database;
 
 import androidx.lifecycle.LiveData;
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
@@ -8,24 +9,79 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
+import org.ebur.debitum.util.Utilities;
+
+import java.util.Date;
 import java.util.List;
 
 @Dao
 public abstract class TransactionDao {
 
-    // get all transactions
+    // -------------------------------------------------------------------------------------------
+    // transaction lists, filtered by type, returned state (items) and optionally person
+    // (money transactions are never returned, see TransactionFilter.money)
+    // id_transaction is used as tie-breaker to make the order (and thus the pages) deterministic
+    //
+    // The queries are package-private constants so QueryPlanTest can check that they are
+    // backed by the indices defined in Transaction.
+    // -------------------------------------------------------------------------------------------
+
+    private static final String RETURNED_STATE_CONDITION =
+            "((:showUnreturned and timestamp_returned is null) or (:showReturned and timestamp_returned is not null))";
+    private static final String TOTAL_COLUMNS = "count(*) as count, " +
+            "coalesce(sum(case when is_monetary then amount else abs(amount) end), 0) as total";
+
+    static final String QUERY_TRANSACTIONS = "select txn.* from txn " +
+            "where is_monetary = :isMonetary and " + RETURNED_STATE_CONDITION + " " +
+            "order by timestamp desc, id_transaction desc";
+    static final String QUERY_TRANSACTIONS_OF_PERSON = "select txn.* from txn " +
+            "where id_person = :idPerson and is_monetary = :isMonetary and " + RETURNED_STATE_CONDITION + " " +
+            "order by timestamp desc, id_transaction desc";
+    static final String QUERY_TOTAL = "select " + TOTAL_COLUMNS + " from txn " +
+            "where is_monetary = :isMonetary and " + RETURNED_STATE_CONDITION;
+    static final String QUERY_TOTAL_OF_PERSON = "select " + TOTAL_COLUMNS + " from txn " +
+            "where id_person = :idPerson and is_monetary = :isMonetary and " + RETURNED_STATE_CONDITION;
+
     @androidx.room.Transaction
-    @Query("select txn.* from txn where is_monetary = :isMonetary order by timestamp desc")
-    abstract LiveData<List<TransactionWithPerson>> getAllTransactions(boolean isMonetary);
+    @Query(QUERY_TRANSACTIONS)
+    abstract PagingSource<Integer, TransactionWithPerson> getTransactionsPaged(boolean isMonetary,
+                                                                               boolean showUnreturned,
+                                                                               boolean showReturned);
 
-    // get all persons with at least one transaction and a list of all of their transactions
     @androidx.room.Transaction
-    //@Query("select * from person where id_person in (select distinct id_person from txn)")
-    @Query("select person.* " +
+    @Query(QUERY_TRANSACTIONS_OF_PERSON)
+    abstract PagingSource<Integer, TransactionWithPerson> getTransactionsOfPersonPaged(boolean isMonetary,
+                                                                                       int idPerson,
+                                                                                       boolean showUnreturned,
+                                                                                       boolean showReturned);
+
+    // number and sum of amounts (money) or number of items (items) of the transactions above
+    @Query(QUERY_TOTAL)
+    abstract LiveData<TransactionTotal> getTotal(boolean isMonetary,
+                                                 boolean showUnreturned,
+                                                 boolean showReturned);
+
+    @Query(QUERY_TOTAL_OF_PERSON)
+    abstract LiveData<TransactionTotal> getTotalOfPerson(boolean isMonetary,
+                                                         int idPerson,
+                                                         boolean showUnreturned,
+                                                         boolean showReturned);
+
+    // -------------------------------------------------------------------------------------------
+
+    // get all persons with at least one transaction together with the sums over their
+    // transactions, aggregated by sqlite so no Transaction objects have to be loaded
+    static final String QUERY_PERSON_SUMMARIES = "select person.*, " +
+            "sum(case when txn.is_monetary then txn.amount else 0 end) as sum, " +
+            "sum(case when txn.is_monetary then 0 else abs(txn.amount) end) as number_of_items, " +
+            "max(txn.timestamp) as last_timestamp, " +
+            "count(txn.id_transaction) as txn_count " +
             "from person join txn on person.id_person = txn.id_person " +
-            "group by person.id_person, person.name, person.note " +
-            "order by max(txn.timestamp) desc")
-    abstract LiveData<List<PersonWithTransactions>> getAllPersonsWithTransactions();
+            "group by person.id_person " +
+            "order by last_timestamp desc";
+
+    @Query(QUERY_PERSON_SUMMARIES)
+    abstract LiveData<List<PersonSummary>> getAllPersonSummaries();
 
     // get a single transaction by id
     @androidx.room.Transaction
@@ -46,13 +102,56 @@ public abstract class TransactionDao {
 
     // delete a transaction and all of its image links
     // note: there is no need to delete the image files here, as they are deleted upon the next
-    // dismissed or saved transaction, when EditTransactionViewModel::deleteOrphanedImageFiles
+    // dismissed or saved transaction, by ImageGarbageCollector
     @androidx.room.Transaction
     int delete(Transaction transaction) {
         deleteTransactionsImages(transaction.idTransaction);
         return deleteTransaction(transaction);
     }
 
+    // ----------------------------------------------------------------------------------------
+    // batch operations, each executed in a single transaction so that multi-select actions on
+    // many rows cause only one commit and one invalidation of the observed queries
+    // ----------------------------------------------------------------------------------------
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract long[] insertAll(List<Transaction> transactions);
+
+    @Update
+    abstract void updateAll(List<Transaction> transactions);
+
+    @Query("delete from image where id_transaction in (:idTransactions)")
+    abstract void deleteImagesOfTransactions(List<Integer> idTransactions);
+
+    @Query("delete from txn where id_transaction in (:idTransactions)")
+    abstract int deleteTransactions(List<Integer> idTransactions);
+
+    @Query("update txn set timestamp_returned = :timestampReturned " +
+            "where id_transaction in (:idTransactions) and not is_monetary and timestamp_returned is null")
+    abstract int markReturned(List<Integer> idTransactions, Date timestampReturned);
+
+    // delete transactions and all of their image links, see delete(Transaction)
+    @androidx.room.Transaction
+    int deleteByIds(List<Integer> idTransactions) {
+        int deleted = 0;
+        for (List<Integer> ids : Utilities.partition(idTransactions, AppDatabase.MAX_BIND_PARAMETERS)) {
+            deleteImagesOfTransactions(ids);
+            deleted += deleteTransactions(ids);
+        }
+        return deleted;
+    }
+
+    // marks all not yet returned items among the given transactions as returned
+    @androidx.room.Transaction
+    int markReturnedByIds(List<Integer> idTransactions, Date timestampReturned) {
+        int updated = 0;
+        // one parameter is taken by timestampReturned
+        for (List<Integer> ids : Utilities.partition(idTransactions, AppDatabase.MAX_BIND_PARAMETERS - 1)) {
+            updated += markReturned(ids, timestampReturned);
+        }
+        return updated;
+    }
+
     // changes the number of decimals of each monetary transaction, while trying to keep the amount
     // shown to the user as constant as possible (if precision is lost, the amount will be rounded)
     //
@@ -0,0 +1,60 @@
+package org.ebur.debitum.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Describes which transactions a transaction list shows: money or items, optionally only those
+ * of one person and (for items) depending on their returned state. The filter is applied by the
+ * queries in TransactionDao, see TransactionRepository::getTransactionsPagingSource.
+ */
+public class TransactionFilter {
+    public final boolean isMonetary;
+    @Nullable public final Integer idPerson;
+    public final boolean showUnreturned;
+    public final boolean showReturned;
+
+    private TransactionFilter(boolean isMonetary, @Nullable Integer idPerson, boolean showUnreturned, boolean showReturned) {
+        this.isMonetary = isMonetary;
+        this.idPerson = idPerson;
+        this.showUnreturned = showUnreturned;
+        this.showReturned = showReturned;
+    }
+
+    /**
+     * @param idPerson id of the person whose transactions shall be shown, null for all persons
+     */
+    @NonNull
+    public static TransactionFilter money(@Nullable Integer idPerson) {
+        // money transactions are never returned
+        return new TransactionFilter(true, idPerson, true, false);
+    }
+
+    /**
+     * @param idPerson id of the person whose transactions shall be shown, null for all persons
+     * @param showUnreturned if items that are not yet returned shall be shown
+     * @param showReturned if items that are already returned shall be shown
+     */
+    @NonNull
+    public static TransactionFilter items(@Nullable Integer idPerson, boolean showUnreturned, boolean showReturned) {
+        return new TransactionFilter(false, idPerson, showUnreturned, showReturned);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionFilter)) return false;
+        TransactionFilter f = (TransactionFilter) o;
+        return isMonetary == f.isMonetary
+                && showUnreturned == f.showUnreturned
+                && showReturned == f.showReturned
+                && Objects.equals(idPerson, f.idPerson);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isMonetary, idPerson, showUnreturned, showReturned);
+    }
+}
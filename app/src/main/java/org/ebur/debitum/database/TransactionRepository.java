@@ -2,20 +2,33 @@ package org.ebur.debitum.database;
 
 import android.app.Application;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
+import androidx.paging.PagingSource;
 
+import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+import kotlin.jvm.functions.Function0;
+
 public class TransactionRepository {
 
+    // number of transactions loaded at once by the paged transaction lists
+    private static final int PAGE_SIZE = 50;
+    // rows of pages not loaded yet are shown as placeholders (see TransactionListAdapter), so the
+    // list has its full length and the scrollbar its final size right away
+    private static final boolean ENABLE_PLACEHOLDERS = true;
+
     private final TransactionDao transactionDao;
 
-    private final LiveData<List<TransactionWithPerson>> allMoneyTransactions;
-    private final LiveData<List<TransactionWithPerson>> allItemTransactions;
-    private final LiveData<List<PersonWithTransactions>> allPersonsWithTransactions;
+    private final LiveData<List<PersonSummary>> allPersonSummaries;
 
     // Note that in order to unit test the Repository, you have to remove the Application
     // dependency. This adds complexity and much more code, and this sample is not about testing.
@@ -26,22 +39,42 @@ public class TransactionRepository {
 
         transactionDao = db.transactionDao();
 
-        allMoneyTransactions = transactionDao.getAllTransactions(true);
-        allItemTransactions = transactionDao.getAllTransactions(false);
-        allPersonsWithTransactions = transactionDao.getAllPersonsWithTransactions();
+        allPersonSummaries = transactionDao.getAllPersonSummaries();
     }
 
     // Room executes all queries on a separate thread.
     // Observed LiveData will notify the observer when the data has changed.
-    public LiveData<List<TransactionWithPerson>> getAllMoneyTransactions() {
-        return allMoneyTransactions;
+    /**
+     * @param pagingSourceFactory creates the PagingSource for each generation of the paged data,
+     *                            usually by calling getTransactionsPagingSource
+     * @return the paged transactions, which should be cached (PagingLiveData.cachedIn) by the caller
+     */
+    public LiveData<PagingData<TransactionWithPerson>> getTransactionsPaged(
+            @NonNull Function0<PagingSource<Integer, TransactionWithPerson>> pagingSourceFactory) {
+        Pager<Integer, TransactionWithPerson> pager = new Pager<>(
+                new PagingConfig(PAGE_SIZE, PAGE_SIZE, ENABLE_PLACEHOLDERS),
+                pagingSourceFactory);
+        return PagingLiveData.getLiveData(pager);
     }
 
-    public LiveData<List<TransactionWithPerson>> getAllItemTransactions() {
-        return allItemTransactions;
+    @NonNull
+    public PagingSource<Integer, TransactionWithPerson> getTransactionsPagingSource(@NonNull TransactionFilter filter) {
+        if (filter.idPerson == null) {
+            return transactionDao.getTransactionsPaged(filter.isMonetary, filter.showUnreturned, filter.showReturned);
+        } else {
+            return transactionDao.getTransactionsOfPersonPaged(filter.isMonetary, filter.idPerson, filter.showUnreturned, filter.showReturned);
+        }
     }
 
-    public LiveData<List<PersonWithTransactions>> getAllPersonsWithTransactions() { return allPersonsWithTransactions; }
+    public LiveData<TransactionTotal> getTotal(@NonNull TransactionFilter filter) {
+        if (filter.idPerson == null) {
+            return transactionDao.getTotal(filter.isMonetary, filter.showUnreturned, filter.showReturned);
+        } else {
+            return transactionDao.getTotalOfPerson(filter.isMonetary, filter.idPerson, filter.showUnreturned, filter.showReturned);
+        }
+    }
+
+    public LiveData<List<PersonSummary>> getAllPersonSummaries() { return allPersonSummaries; }
 
     // You must call this on a non-UI thread or your app will throw an exception. Room ensures
     // that you're not doing any long running operations on the main thread, blocking the UI.
@@ -68,6 +101,19 @@ public class TransactionRepository {
         });
     }
 
+    // batch operations, see TransactionDao
+    public void deleteByIds(List<Integer> idTransactions) {
+        AppDatabase.databaseTaskExecutor.execute(() -> {
+            transactionDao.deleteByIds(idTransactions);
+        });
+    }
+
+    public void markReturnedByIds(List<Integer> idTransactions, Date timestampReturned) {
+        AppDatabase.databaseTaskExecutor.execute(() -> {
+            transactionDao.markReturnedByIds(idTransactions, timestampReturned);
+        });
+    }
+
     public TransactionWithPerson getTransaction(int idTransaction) throws ExecutionException, InterruptedException {
         Future<TransactionWithPerson> future = AppDatabase.databaseTaskExecutor.submit( () -> transactionDao.getTransaction(idTransaction));
         return future.get();
@@ -0,0 +1,19 @@
+package org.ebur.debitum.database;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Number and total amount of the transactions matching a TransactionFilter, calculated by
+ * sqlite so the totals header does not depend on all transactions being loaded.
+ */
+public class TransactionTotal {
+    @ColumnInfo(name = "count") public int count;
+    // Money: sum of all amounts
+    // Items: sum of |amount|, i.e. number of items
+    @ColumnInfo(name = "total") public int total;
+
+    public TransactionTotal(int count, int total) {
+        this.count = count;
+        this.total = total;
+    }
+}
@@ -23,8 +23,13 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import org.ebur.debitum.BuildConfig;
 import org.ebur.debitum.R;
+import org.ebur.debitum.database.ImageGarbageCollector;
+import org.ebur.debitum.database.ImageRepository;
+import org.ebur.debitum.ui.edit_transaction.EditTransactionFragment;
 import org.ebur.debitum.ui.list.AbstractBaseListFragment;
 
+import java.io.File;
+
 public class MainActivity extends AppCompatActivity {
 
     private NavController nav;
@@ -42,6 +47,14 @@ public class MainActivity extends AppCompatActivity {
         setupFAB();
 
         showWhatsNewPopup();
+
+        if (savedInstanceState == null) {
+            File imageDir = EditTransactionFragment.getImageDir(this);
+            // images added by older versions (or restored from their backups) are renamed once
+            new ImageRepository(getApplication()).migrateLegacyImages(imageDir);
+            // e.g. images of transactions that were deleted since the last start
+            ImageGarbageCollector.getInstance(getApplication()).schedule(imageDir);
+        }
     }
 
     private void setupToolbar() {
@@ -28,23 +28,16 @@ import com.google.android.material.transition.MaterialFadeThrough;
 
 import org.ebur.debitum.BuildConfig;
 import org.ebur.debitum.R;
-import org.ebur.debitum.database.AppDatabase;
 import org.ebur.debitum.ui.edit_transaction.EditTransactionFragment;
-import org.ebur.debitum.util.FileUtils;
+import org.ebur.debitum.util.BackupWriter;
+import org.ebur.debitum.util.ImageIngester;
 import org.ebur.debitum.util.Utilities;
 import org.ebur.debitum.viewModel.SettingsViewModel;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
-import java.util.Properties;
 
 
 public class SettingsFragment extends PreferenceFragmentCompat {
@@ -58,18 +51,23 @@ public class SettingsFragment extends PreferenceFragmentCompat {
     public final static String PREF_KEY_DECIMALS = "decimals";
     public final static String PREF_KEY_INVERT_COLORS = "invert_colors";
     public final static String PREF_KEY_CHANGELOG = "changelogSeenVersion";
+    public final static String PREF_KEY_INCREMENTAL_BACKUP = "incremental_backup";
 
-    public final static String FILENAME_DB = "debitum.db";
-    public final static String FILENAME_PREFS = "debitum-preferences.xml";
+    public final static String FILENAME_DB = BackupWriter.ENTRY_DB;
+    public final static String FILENAME_PREFS = BackupWriter.ENTRY_PREFS;
 
     private SettingsViewModel viewModel;
+    @Nullable private Snackbar backupSnackbar;
+    @Nullable private Snackbar restoreSnackbar;
 
+    // multiple documents can be chosen to restore a full backup together with its incremental
+    // backups
     private final ActivityResultLauncher<String[]> restoreLauncher =
             registerForActivityResult(
-                    new ActivityResultContracts.OpenDocument(),
-                    uri -> {
-                        if (uri != null) {
-                            restore(uri);
+                    new ActivityResultContracts.OpenMultipleDocuments(),
+                    uris -> {
+                        if (uris != null && !uris.isEmpty()) {
+                            restore(uris);
                         }
                     });
 
@@ -87,6 +85,8 @@ public class SettingsFragment extends PreferenceFragmentCompat {
 
         viewModel = new ViewModelProvider(this).get(SettingsViewModel.class);
         setPreferencesFromResource(R.xml.root_preferences, rootKey);
+        viewModel.getBackupProgress().observe(this, this::onBackupProgress);
+        viewModel.getRestoreProgress().observe(this, this::onRestoreProgress);
 
         SwitchPreferenceCompat dismissFilterPref = findPreference(PREF_KEY_DISMISS_FILTER_BEHAVIOUR);
         if (dismissFilterPref != null) {
@@ -160,6 +160,15 @@ public class SettingsFragment extends PreferenceFragmentCompat {
             });
         }
 
+        for (String key : new String[]{ImageIngester.PREF_KEY_MAX_DIMENSION,
+                ImageIngester.PREF_KEY_FORMAT,
+                ImageIngester.PREF_KEY_QUALITY}) {
+            ListPreference imagePref = findPreference(key);
+            if (imagePref != null) {
+                imagePref.setSummaryProvider(ListPreference.SimpleSummaryProvider.getInstance());
+            }
+        }
+
         Preference backupPref = findPreference(PREF_KEY_BACKUP);
         if (backupPref!=null) {
             backupPref.setOnPreferenceClickListener(preference -> {
@@ -269,58 +278,42 @@ public class SettingsFragment extends PreferenceFragmentCompat {
             }
     );
 
-    // perform actual backup
+    // perform actual backup (in the background, see SettingsViewModel::startBackup)
     private void backup(Uri destUri) {
+        viewModel.startBackup(destUri, EditTransactionFragment.getImageDir(requireContext()));
+    }
 
-        String BACKUP_SUBDIR = "backup";
-        String path = requireContext().getExternalFilesDir(null).getAbsolutePath() + File.separator + BACKUP_SUBDIR;
-
-        AppDatabase.backupDatabase(FILENAME_DB, path, (successDb, messageDb) -> {
-            File dbFile = new File(path, FILENAME_DB);
-            File prefsFile = new File(path, FILENAME_PREFS);
-            File imagesDir = EditTransactionFragment.getImageDir(requireContext());
-            String info;
-
-            List<File> filesToZip = new ArrayList<>();
-            filesToZip.add(dbFile);
-            filesToZip.add(prefsFile);
-            if (imagesDir.listFiles() != null) { filesToZip.addAll(Arrays.asList(imagesDir.listFiles()));}
-
-            if (successDb) {
-                info = getString(R.string.backup_successful);
-                try {
-                    exportPreferences(prefsFile);
-                    FileUtils.zip(filesToZip, destUri, requireContext());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    info = getString(R.string.backup_failed, e.getMessage());
-                }
+    private void onBackupProgress(@Nullable SettingsViewModel.BackupProgress progress) {
+        if (progress == null) return;
+        if (!progress.isFinished()) {
+            String text = getString(R.string.backup_in_progress, progress.percent);
+            if (backupSnackbar == null) {
+                backupSnackbar = Snackbar.make(requireActivity().findViewById(R.id.nav_host_fragment),
+                        text,
+                        Snackbar.LENGTH_INDEFINITE)
+                        .setAction(R.string.dialog_cancel, v -> viewModel.cancelBackup());
+                backupSnackbar.show();
             } else {
-                info = getString(R.string.backup_failed, messageDb);
+                backupSnackbar.setText(text);
             }
-            finishBackup(info, dbFile, prefsFile);
-        });
-    }
-
-    // stores the app's preferences as a java properties file
-    private void exportPreferences(@NonNull File prefsFile) throws IOException {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(requireContext());
-        Properties props = new Properties();
-        props.putAll(prefs.getAll());
-        FileOutputStream out = new FileOutputStream(prefsFile);
-        props.storeToXML(out, "");
-        out.close();
-    }
-
-    private void finishBackup(@NonNull String info, @NonNull File dbFile, @NonNull File prefsFile) {
-        // show snackbar
-        Snackbar.make(requireActivity().findViewById(R.id.nav_host_fragment),
-                info,
-                7000)
-                .show();
-        // cleanup temporary db file and prefs file
-        dbFile.delete();
-        prefsFile.delete();
+        } else {
+            if (backupSnackbar != null) {
+                backupSnackbar.dismiss();
+                backupSnackbar = null;
+            }
+            switch (progress.state) {
+                case SettingsViewModel.BackupProgress.SUCCEEDED:
+                    showSnackbar(getString(R.string.backup_successful));
+                    break;
+                case SettingsViewModel.BackupProgress.CANCELLED:
+                    showSnackbar(getString(R.string.backup_cancelled));
+                    break;
+                default:
+                    showSnackbar(getString(R.string.backup_failed, progress.message));
+            }
+            // the result was shown, so do not show it again (e.g. after rotating the device)
+            viewModel.clearBackupProgress();
+        }
     }
 
     private void startRestore() {
@@ -338,103 +331,42 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         dialog.show();
     }
 
-    private void restore(Uri uriZip) {
-        File imageDir = EditTransactionFragment.getImageDir(requireContext());
-        File tmpDir = new File(imageDir, "restore/");
-        File dbFile = new File(tmpDir, FILENAME_DB);
-        File prefsFile = new File(tmpDir, FILENAME_PREFS);
-        try {
-            // create tmpDir
-            if (!tmpDir.mkdirs() || !tmpDir.canWrite()) {
-                // abort with error message
-                String info = getString(R.string.restore_failed_tmpdir, tmpDir.getAbsolutePath());
-                showSnackbar(getString(R.string.restore_failed, info));
-                FileUtils.deleteDir(tmpDir);
-                return;
-            }
-            // unzip file to tmpDir
-            FileUtils.unzip(uriZip, tmpDir, requireContext());
-
-            // note: only the db file is checked here. Any orphaned files will
-            // be deleted when the EditTransaction Dialog is closed the next time
-            if (!dbFile.exists() | !dbFile.canRead()) {
-                // abort with error message
-                String info = getString(R.string.restore_failed_dbFileMissing);
-                showSnackbar(getString(R.string.restore_failed, info));
-                FileUtils.deleteDir(tmpDir);
-                return;
-            }
-
-            // restore database
-            AppDatabase.restoreDatabase(Uri.fromFile(dbFile), (success, message) -> {
-                if (success) {
-                    // delete dbFile so that it is not copied to imagesDir afterwards
-                    dbFile.delete();
-
-                    //import preferences
-                    importPreferences(prefsFile);
-                    // delete prefsFile so that it is not copied to imagesDir afterwards
-                    prefsFile.delete();
-
-                    // copy images to imageDir
-                    // Note: there is no (urgent) need for cleaning the image directory before
-                    // copying the restored files there, because any excess images will be deleted
-                    // when the EditTransaction dialog is closed (save/dismiss) the next time
-                    for (File file:tmpDir.listFiles()) {
-                        try {
-                            FileUtils.copyFile(file, new File(imageDir, file.getName()));
-                        } catch (IOException e) {
-                            // show warning and continue with next file
-                            e.printStackTrace();
-                            showSnackbar(getString(R.string.restore_not_all_images_restored, e.getMessage()));
-                        }
-                    }
-                    FileUtils.deleteDir(tmpDir);
-                    restartApp();
-                } else {
-                    FileUtils.deleteDir(tmpDir);
-                    showSnackbar(getString(R.string.restore_failed, message));
-                }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
-            FileUtils.deleteDir(tmpDir);
-            showSnackbar(getString(R.string.restore_failed, e.getMessage()));
-        }
+    // perform actual restore (in the background, see SettingsViewModel::startRestore)
+    private void restore(List<Uri> urisZip) {
+        viewModel.startRestore(urisZip, EditTransactionFragment.getImageDir(requireContext()));
     }
 
-    // loads the app's preferences from a java properties file
-    private void importPreferences(@NonNull File prefsFile) {
-        Properties props = new Properties();
-
-        if (!prefsFile.exists()) {
-            // assume we are restoring from old backup without preferences. Then the amounts have
-            // 2 decimals (there was not setting for decimals when backups did not contain preferences)
-            // this prevents importing from old backups while having decimals set to something other
-            // than 2 and ending up with wrong amounts
-            props.put(PREF_KEY_DECIMALS, "2");
+    private void onRestoreProgress(@Nullable SettingsViewModel.BackupProgress progress) {
+        if (progress == null) return;
+        if (!progress.isFinished()) {
+            String text = getString(R.string.restore_in_progress, progress.percent);
+            if (restoreSnackbar == null) {
+                restoreSnackbar = Snackbar.make(requireActivity().findViewById(R.id.nav_host_fragment),
+                        text,
+                        Snackbar.LENGTH_INDEFINITE)
+                        .setAction(R.string.dialog_cancel, v -> viewModel.cancelRestore());
+                restoreSnackbar.show();
+            } else {
+                restoreSnackbar.setText(text);
+            }
         } else {
-            // get preferences from props xml
-            try {
-                FileInputStream in = new FileInputStream(prefsFile);
-                props.loadFromXML(in);
-                in.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-                showSnackbar(getString(R.string.restore_preferences_not_restored, e.getMessage()));
+            if (restoreSnackbar != null) {
+                restoreSnackbar.dismiss();
+                restoreSnackbar = null;
+            }
+            viewModel.clearRestoreProgress();
+            switch (progress.state) {
+                case SettingsViewModel.BackupProgress.SUCCEEDED:
+                    if (progress.message != null) showSnackbar(progress.message);
+                    restartApp();
+                    break;
+                case SettingsViewModel.BackupProgress.CANCELLED:
+                    showSnackbar(getString(R.string.restore_cancelled));
+                    break;
+                default:
+                    showSnackbar(getString(R.string.restore_failed, progress.message));
             }
         }
-        // update app preferences from props
-        SharedPreferences.Editor editor = PreferenceManager
-                .getDefaultSharedPreferences(requireContext())
-                .edit();
-
-        for(Object keyObj:props.keySet()) {
-            String key = keyObj.toString();
-            String value = props.getProperty(key);
-            editor.putString(key, value);
-        }
-        editor.apply();
     }
 
     private void restartApp() {
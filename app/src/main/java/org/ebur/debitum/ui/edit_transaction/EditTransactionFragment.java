@@ -21,6 +21,7 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import androidx.fragment.app.DialogFragment;
@@ -35,6 +36,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.datepicker.MaterialDatePicker;
 import com.google.android.material.datepicker.MaterialPickerOnPositiveButtonClickListener;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputLayout;
 
@@ -43,14 +45,12 @@ import org.ebur.debitum.database.Person;
 import org.ebur.debitum.database.Transaction;
 import org.ebur.debitum.database.TransactionWithPerson;
 import org.ebur.debitum.ui.TextInputLayoutErrorResetter;
-import org.ebur.debitum.util.FileUtils;
 import org.ebur.debitum.util.Utilities;
 import org.ebur.debitum.viewModel.EditTransactionViewModel;
 import org.ebur.debitum.viewModel.NewPersonRequestViewModel;
 import org.ebur.debitum.viewModel.PersonFilterViewModel;
 
 import java.io.File;
-import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -90,6 +90,7 @@ public class EditTransactionFragment extends DialogFragment {
     private TextInputLayout editReturnDateLayout;
     private AutoCompleteTextView editReturnDate;
     private RecyclerView imageRecyclerView;
+    private LinearProgressIndicator imageImportProgress;
     private EditTransactionImageAdapter imageAdapter;
 
     // launcher for picking a new image file
@@ -98,21 +99,8 @@ public class EditTransactionFragment extends DialogFragment {
                     new ActivityResultContracts.GetContent(),
                     uri -> {
                         if (uri != null) { // uri is null when the picker was cancelled
-                            File dir = getImageDir();
-                            String filename = FileUtils.getNextImageFilename(dir)
-                                    + "."
-                                    + FileUtils.getFileExtension(uri, requireContext().getContentResolver());
-                            File destFile = new File(dir, filename);
-                            // copy image to txn dir
-                            try {
-                                FileUtils.copyFile(uri,
-                                        destFile,
-                                        requireContext().getContentResolver());
-                                viewModel.addImageLink(destFile.getName());
-                            } catch (IOException e) {
-                                Toast.makeText(requireContext(), getString(R.string.edit_transaction_image_error_copying, e.getMessage()), Toast.LENGTH_LONG).show();
-                                e.printStackTrace();
-                            }
+                            // the image is resized/copied in the background and linked when done
+                            viewModel.importImage(uri, getImageDir());
                         }
                     });
 
@@ -236,14 +224,15 @@ public class EditTransactionFragment extends DialogFragment {
 
     @Override
     public void dismiss() {
-        viewModel.deleteOrphanedImageFiles(getImageDir());
+        viewModel.collectImageGarbage(getImageDir());
         super.dismiss();
     }
 
     private void setupRecyclerView(@NonNull View root) {
         imageRecyclerView = root.findViewById(R.id.images);
+        imageImportProgress = root.findViewById(R.id.image_import_progress);
         imageAdapter = new EditTransactionImageAdapter(new EditTransactionImageAdapter.Diff(), addImageLauncher, imagefile -> {
-            viewModel.deleteImageLink(imagefile.getName()); // the actual file will be deleted by deleteOrphanedImageFiles on save/dismiss
+            viewModel.deleteImageLink(imagefile.getName()); // the actual file will be deleted by the ImageGarbageCollector after save/dismiss
         });
         imageRecyclerView.setAdapter(imageAdapter);
         imageRecyclerView.setLayoutManager(new LinearLayoutManager(requireActivity(), LinearLayoutManager.HORIZONTAL, false));
@@ -255,6 +244,22 @@ public class EditTransactionFragment extends DialogFragment {
 
     private void subscribeToViewModel() {
         viewModel.getImageFilenames().observe(getViewLifecycleOwner(), this::updateAdapterList);
+        viewModel.getImageImport().observe(getViewLifecycleOwner(), this::onImageImport);
+    }
+
+    private void onImageImport(@Nullable EditTransactionViewModel.ImageImport imageImport) {
+        if (imageImport == null) {
+            imageImportProgress.setVisibility(View.GONE);
+        } else if (imageImport.state == EditTransactionViewModel.ImageImport.RUNNING) {
+            imageImportProgress.setIndeterminate(imageImport.percent == 0);
+            imageImportProgress.setProgressCompat(imageImport.percent, true);
+            imageImportProgress.setVisibility(View.VISIBLE);
+        } else {
+            if (imageImport.state == EditTransactionViewModel.ImageImport.FAILED) {
+                Toast.makeText(requireContext(), getString(R.string.edit_transaction_image_error_copying, imageImport.message), Toast.LENGTH_LONG).show();
+            }
+            viewModel.clearImageImport();
+        }
     }
 
     private void updateAdapterList(List<String> filenames) {
@@ -434,9 +439,6 @@ public class EditTransactionFragment extends DialogFragment {
                     editDescription.getText().toString(),
                     viewModel.getTimestamp());
 
-            // record if txn has images
-            transaction.hasImages = viewModel.hasImages();
-
             // update returned date for item txns
             if (viewModel.isItemTransaction()) {
                 // check if return date is empty (could have been cleared by endIcon click which
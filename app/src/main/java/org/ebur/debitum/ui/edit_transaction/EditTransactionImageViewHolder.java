@@ -23,6 +23,7 @@ import androidx.core.content.FileProvider;
 import androidx.recyclerview.widget.RecyclerView;
 
 import org.ebur.debitum.R;
+import org.ebur.debitum.util.ThumbnailLoader;
 
 import java.io.File;
 
@@ -30,6 +31,8 @@ class EditTransactionImageViewHolder extends RecyclerView.ViewHolder implements
     private final ImageView imgView;
     private final View checkmarkView;
     private final Drawable placeholderDrawable;
+    private final ThumbnailLoader thumbnailLoader;
+    private final int thumbnailSize;
     private final ActivityResultLauncher<String> addImageLauncher;
     private final DeleteImageCallback deleteCallback;
     @Nullable private File imageFile;
@@ -46,13 +49,15 @@ class EditTransactionImageViewHolder extends RecyclerView.ViewHolder implements
 
         Context context = itemView.getContext();
         placeholderDrawable = AppCompatResources.getDrawable(context, R.drawable.ic_baseline_add_photo_64);
+        thumbnailLoader = ThumbnailLoader.getInstance(context);
+        thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.transaction_image_height);
     }
 
     public void bind(@Nullable File imageFile) {
         this.imageFile = imageFile;
         checkmarkView.setVisibility(View.INVISIBLE);
         if (imageFile != null) {
-            imgView.setImageURI(Uri.fromFile(imageFile));
+            thumbnailLoader.load(imageFile, imgView, thumbnailSize);
             itemView.setOnClickListener(view -> {
                 showImage();
             });
@@ -69,6 +74,7 @@ class EditTransactionImageViewHolder extends RecyclerView.ViewHolder implements
                 }
             });
         } else {
+            thumbnailLoader.cancel(imgView);
             imgView.setImageDrawable(placeholderDrawable);
             itemView.setOnClickListener(view -> {
                 addImage();
@@ -1,5 +1,7 @@
 package org.ebur.debitum.ui.list;
 
+import android.annotation.SuppressLint;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.ActionMode;
 import android.view.LayoutInflater;
@@ -18,6 +20,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.preference.PreferenceManager;
 import androidx.recyclerview.selection.ItemKeyProvider;
 import androidx.recyclerview.selection.MutableSelection;
 import androidx.recyclerview.selection.Selection;
@@ -25,16 +28,16 @@ import androidx.recyclerview.selection.SelectionPredicates;
 import androidx.recyclerview.selection.SelectionTracker;
 import androidx.recyclerview.selection.StorageStrategy;
 import androidx.recyclerview.widget.LinearLayoutManager;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.transition.Transition;
 
 import com.google.android.material.transition.MaterialFadeThrough;
 
 import org.ebur.debitum.R;
-import org.ebur.debitum.database.Transaction;
-import org.ebur.debitum.util.ColorUtils;
-import org.ebur.debitum.util.Utilities;
+import org.ebur.debitum.util.DisplaySettings;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -43,11 +46,11 @@ import org.ebur.debitum.util.Utilities;
  * @param <TAdapter> the type of the recycler view's adapter
  * @param <TViewHolder> the type of the adapter's ViewHolder
  * @param <TListItem> the type containing the data for one row (=the "Type" in the observed
- *                   LiveData<List<Type>>)
+ *                   LiveData<List<Type>> or LiveData<PagingData<Type>>)
  */
 public abstract class AbstractBaseListFragment
         <TViewModel extends AndroidViewModel,
-                TAdapter extends ListAdapter<TListItem, TViewHolder> & AbstractBaseListFragment.Adapter,
+                TAdapter extends RecyclerView.Adapter<TViewHolder> & AbstractBaseListFragment.Adapter,
                 TViewHolder extends RecyclerView.ViewHolder,
                 TListItem>
         extends Fragment {
@@ -59,6 +62,13 @@ public abstract class AbstractBaseListFragment
     protected TAdapter adapter;
     protected SelectionTracker<Long> selectionTracker = null;
     protected View emptyView;
+    protected DisplaySettings displaySettings;
+
+    // SharedPreferences only holds a weak reference to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefChangeListener =
+            (sharedPreferences, key) -> {
+                if (DisplaySettings.isAffectedBy(key)) updateDisplaySettings();
+            };
 
     protected ActionMode actionMode;
 
@@ -113,6 +123,10 @@ public abstract class AbstractBaseListFragment
 
         emptyView = root.findViewById(R.id.emptyDbView);
 
+        displaySettings = DisplaySettings.from(requireContext());
+        PreferenceManager.getDefaultSharedPreferences(requireContext())
+                .registerOnSharedPreferenceChangeListener(prefChangeListener);
+
         setupTotalHeader(root);
         setupRecyclerView(root);
         buildSelectionTracker();
@@ -143,16 +157,17 @@ public abstract class AbstractBaseListFragment
     }
     protected void updateTotalHeader(int total) {
         TextView totalView = requireView().findViewById(R.id.header_total);
-        totalView.setText(Transaction.formatMonetaryAmount(total, Utilities.getNrOfDecimals(requireContext())));
+        totalView.setText(displaySettings.formatAmount(total));
         @ColorInt int totalColor = total>0
-                ? ColorUtils.getOweColor(requireContext())
-                : ColorUtils.getLentColor(requireContext());
+                ? displaySettings.getOweColor()
+                : displaySettings.getLentColor();
         totalView.setTextColor(totalColor);
     }
 
     protected void setupRecyclerView(@NonNull View root) {
         recyclerView = root.findViewById(R.id.recyclerview);
         adapter = getAdapter();
+        adapter.setDisplaySettings(displaySettings);
         recyclerView.setAdapter(adapter);
         recyclerView.setLayoutManager(new LinearLayoutManager(requireActivity()));
         addRecyclerViewDecorations();
@@ -161,6 +176,19 @@ public abstract class AbstractBaseListFragment
     protected void addRecyclerViewDecorations() {
     }
 
+    /**
+     * Takes a new snapshot of the display settings and rebinds all rows, if it differs from the
+     * one the rows were bound with
+     */
+    @SuppressLint("NotifyDataSetChanged") // all rows are affected
+    private void updateDisplaySettings() {
+        DisplaySettings newDisplaySettings = DisplaySettings.from(requireContext());
+        if (newDisplaySettings.equals(displaySettings)) return;
+        displaySettings = newDisplaySettings;
+        adapter.setDisplaySettings(displaySettings);
+        adapter.notifyDataSetChanged();
+    }
+
     protected void buildSelectionTracker() {
         selectionTracker = new SelectionTracker.Builder<>(
                 TAG,
@@ -274,6 +302,18 @@ public abstract class AbstractBaseListFragment
         return true;
     }
 
+    /**
+     * @return the selected ids as needed by the batch operations of the repositories
+     */
+    @NonNull
+    protected static List<Integer> getSelectedIds(@NonNull Selection<Long> selection) {
+        List<Integer> ids = new ArrayList<>(selection.size());
+        for (Long id : selection) {
+            ids.add(id.intValue());
+        }
+        return ids;
+    }
+
     protected abstract void onActionModeEdit(int selectedId);
     protected abstract void onActionModeDelete(Selection<Long> selection);
     protected abstract void onActionModeReturned(int selectedId);
@@ -286,6 +326,8 @@ public abstract class AbstractBaseListFragment
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        PreferenceManager.getDefaultSharedPreferences(requireContext())
+                .unregisterOnSharedPreferenceChangeListener(prefChangeListener);
         // finish action mode to prevent it being carried over to another list (causes crash, see issue #15)
         if (actionMode!=null) {
             actionMode.finish();
@@ -295,6 +337,7 @@ public abstract class AbstractBaseListFragment
 
     interface Adapter {
         void setSelectionTracker(SelectionTracker<Long> selectionTracker);
+        void setDisplaySettings(DisplaySettings displaySettings);
     }
 }
 
@@ -20,16 +20,13 @@ import androidx.preference.PreferenceManager;
 import androidx.recyclerview.selection.Selection;
 
 import org.ebur.debitum.R;
-import org.ebur.debitum.database.Person;
-import org.ebur.debitum.database.Transaction;
-import org.ebur.debitum.database.TransactionWithPerson;
+import org.ebur.debitum.database.TransactionFilter;
 import org.ebur.debitum.ui.SettingsFragment;
 import org.ebur.debitum.viewModel.ItemReturnedFilterViewModel;
 
-import java.util.List;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 // like TransactionListFragment but shows only non-monetary items
 public class ItemTransactionListFragment extends TransactionListFragment {
@@ -64,29 +61,30 @@ public class ItemTransactionListFragment extends TransactionListFragment {
 
     @Override
     protected void subscribeToViewModel() {
-        viewModel.getItemTransactions().observe(getViewLifecycleOwner(), this::updateAdapter);
+        super.subscribeToViewModel();
         returnedFilterViewModel.getFilterMode().observe(getViewLifecycleOwner(), filterMode -> {
             String[] descs = getResources().getStringArray(R.array.header_desc_items);
             descView.setText(descs[filterMode-1]);
             setFilterRadioButtonsCheckedStatus(filterMode);
-            updateAdapter(viewModel.getItemTransactions().getValue());
+            viewModel.setFilter(getFilter());
         });
     }
 
-    private void updateAdapter(List<TransactionWithPerson> transactions) {
-        if (transactions != null) {
-            Person filterPerson = personFilterViewModel.getFilterPerson();
-            List<TransactionWithPerson> listForAdapter = filter(transactions, filterPerson);
-            Integer filterMode = returnedFilterViewModel.getFilterMode().getValue();
-            listForAdapter = filter(listForAdapter, filterMode != null ? filterMode : 0);
-            updateTotalHeader(TransactionWithPerson.getNumberOfItems(listForAdapter));
-            adapter.submitList(listForAdapter);
-
-            // show or hide empty screen
-            boolean empty = transactions.isEmpty();
-            recyclerView.setVisibility(empty ? View.GONE : View.VISIBLE);
-            emptyView.setVisibility(empty ? View.VISIBLE : View.GONE);
-        }
+    @NonNull
+    @Override
+    protected TransactionFilter getFilter() {
+        Integer filterMode = returnedFilterViewModel.getFilterMode().getValue();
+        int mode = filterMode != null ? filterMode : ItemReturnedFilterViewModel.FILTER_ALL;
+        return TransactionFilter.items(getFilterPersonId(),
+                (mode & ItemReturnedFilterViewModel.FILTER_UNRETURNED) > 0,
+                (mode & ItemReturnedFilterViewModel.FILTER_RETURNED) > 0);
+    }
+
+    @Override
+    protected boolean isFiltered() {
+        Integer filterMode = returnedFilterViewModel.getFilterMode().getValue();
+        return super.isFiltered()
+                || (filterMode != null && filterMode != ItemReturnedFilterViewModel.FILTER_ALL);
     }
 
     @Override
@@ -193,27 +191,7 @@ public class ItemTransactionListFragment extends TransactionListFragment {
 
     @Override
     protected void onActionModeReturned(int selectedId) {
-        // get Transaction from viewModel/repository
-        Transaction txn;
-        try {
-            txn = viewModel.getTransactionFromDatabase(selectedId);
-        } catch (ExecutionException |InterruptedException e) {
-            //TODO notify with toast
-            String errorMessage = getResources().getString(R.string.error_message_database_access, e.getLocalizedMessage());
-            Log.e(TAG, errorMessage);
-            return;
-        }
-        // set returned
-        txn.setReturned();
-        // update via viewModel/repository
-        viewModel.update(txn);
-    }
-
-    protected List<TransactionWithPerson> filter(List<TransactionWithPerson> transactions, int filterMode) {
-        if (transactions == null) return null;
-        else return transactions.stream()
-                .filter(twp -> !twp.transaction.isReturned() && (filterMode & ItemReturnedFilterViewModel.FILTER_UNRETURNED) > 0
-                        || twp.transaction.isReturned() && (filterMode & ItemReturnedFilterViewModel.FILTER_RETURNED) > 0)
-                .collect(Collectors.toList());
+        // set returned directly in the database, no need to load the transaction first
+        viewModel.markReturned(Collections.singletonList(selectedId));
     }
 }
@@ -2,20 +2,28 @@ package org.ebur.debitum.ui.list;
 
 import android.annotation.SuppressLint;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.selection.SelectionTracker;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ListAdapter;
 
-import org.ebur.debitum.database.PersonWithTransactions;
+import org.ebur.debitum.database.PersonSummary;
+import org.ebur.debitum.util.DisplaySettings;
+import org.ebur.debitum.viewModel.ContactsHelper;
+
+import java.util.Objects;
 
 public class PersonSumListAdapter
         extends ListAdapter<PersonSumListAdapter.PersonWithAvatar, PersonSumListViewHolder>
         implements AbstractBaseListFragment.Adapter {
 
     private SelectionTracker<Long> selectionTracker = null;
+    private DisplaySettings displaySettings = null;
+    private ContactsHelper contactsHelper = null;
 
     public PersonSumListAdapter(@NonNull DiffUtil.ItemCallback<PersonWithAvatar> diffCallback) {
         super(diffCallback);
@@ -31,40 +39,46 @@ public class PersonSumListAdapter
     @Override
     public void onBindViewHolder(@NonNull PersonSumListViewHolder holder, int position) {
         PersonWithAvatar current = getItem(position);
-        holder.bind(current.pwt, current.avatar, selectionTracker.isSelected(getItemId(position)));
+        holder.bind(current.summary, current.avatar, selectionTracker.isSelected(getItemId(position)), displaySettings);
+        holder.loadAvatar(current.pendingContactUri, contactsHelper);
     }
 
     @Override
     public long getItemId(int position) {
-        return getItem(position).pwt.person.idPerson;
+        return getItem(position).summary.person.idPerson;
     }
 
     public void setSelectionTracker(SelectionTracker<Long> selectionTracker) { this.selectionTracker = selectionTracker; }
+    public void setDisplaySettings(DisplaySettings displaySettings) { this.displaySettings = displaySettings; }
+    public void setContactsHelper(ContactsHelper contactsHelper) { this.contactsHelper = contactsHelper; }
 
     static class PersonSumDiff extends DiffUtil.ItemCallback<PersonWithAvatar> {
 
         @Override
         public boolean areItemsTheSame(@NonNull PersonWithAvatar oldItem, @NonNull PersonWithAvatar newItem) {
-            return oldItem.pwt.person.idPerson == newItem.pwt.person.idPerson;
+            return oldItem.summary.person.idPerson == newItem.summary.person.idPerson;
         }
 
         @SuppressLint("DiffUtilEquals")
         @Override
         public boolean areContentsTheSame(@NonNull PersonWithAvatar oldItem, @NonNull PersonWithAvatar newItem) {
-            // changes in avatar are ONLY relevant if the contacts permission is granted while the
-            // personSumList is shown, so comparing classes is enough
-            return oldItem.pwt.equals(newItem.pwt)
-                    && oldItem.avatar.getClass().equals(newItem.avatar.getClass());
+            // avatars are cached by PersonSumListFragment, a changed avatar is a new drawable
+            return oldItem.summary.equals(newItem.summary)
+                    && oldItem.avatar == newItem.avatar
+                    && Objects.equals(oldItem.pendingContactUri, newItem.pendingContactUri);
         }
     }
 
     public static class PersonWithAvatar {
-        public PersonWithTransactions pwt;
+        public PersonSummary summary;
         public Drawable avatar;
+        // linked contact whose photo is not loaded yet, avatar is a placeholder until then
+        @Nullable public Uri pendingContactUri;
 
-        public PersonWithAvatar(PersonWithTransactions pwt, Drawable avatar) {
-            this.pwt = pwt;
+        public PersonWithAvatar(PersonSummary summary, Drawable avatar, @Nullable Uri pendingContactUri) {
+            this.summary = summary;
             this.avatar = avatar;
+            this.pendingContactUri = pendingContactUri;
         }
     }
 }
@@ -1,6 +1,9 @@
 package org.ebur.debitum.ui.list;
 
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.InsetDrawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.ActionMode;
@@ -30,18 +33,19 @@ import com.google.android.material.snackbar.Snackbar;
 
 import org.ebur.debitum.R;
 import org.ebur.debitum.database.Person;
-import org.ebur.debitum.database.PersonWithTransactions;
-import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.database.PersonSummary;
 import org.ebur.debitum.ui.EditPersonFragment;
 import org.ebur.debitum.ui.edit_transaction.EditTransactionFragment;
 import org.ebur.debitum.util.ColorUtils;
-import org.ebur.debitum.util.Utilities;
 import org.ebur.debitum.viewModel.ContactsHelper;
 import org.ebur.debitum.viewModel.ListOrderViewModel;
 import org.ebur.debitum.viewModel.PersonSumListViewModel;
 
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -57,6 +61,40 @@ public class PersonSumListFragment
     private ContactsHelper contactsHelper;
     boolean contactLinkingEnabled;
     private Menu menu;
+    // the avatars of the last update of the list
+    @NonNull private Map<AvatarKey, Drawable> avatarCache = new HashMap<>();
+
+    // everything an avatar drawable depends on
+    private static class AvatarKey {
+        static final long NO_PHOTO = -1;
+
+        private final int idPerson;
+        @Nullable private final Uri contactUri;
+        private final int colorIndex;
+        private final long photoVersion;
+
+        AvatarKey(int idPerson, @Nullable Uri contactUri, int colorIndex, long photoVersion) {
+            this.idPerson = idPerson;
+            this.contactUri = contactUri;
+            this.colorIndex = colorIndex;
+            this.photoVersion = photoVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AvatarKey)) return false;
+            AvatarKey other = (AvatarKey) o;
+            return idPerson == other.idPerson
+                    && Objects.equals(contactUri, other.contactUri)
+                    && colorIndex == other.colorIndex
+                    && photoVersion == other.photoVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(idPerson, contactUri, colorIndex, photoVersion);
+        }
+    }
 
     @Override
     @LayoutRes
@@ -69,7 +107,9 @@ public class PersonSumListFragment
     }
     @Override
     PersonSumListAdapter getAdapter() {
-        return new PersonSumListAdapter(new PersonSumListAdapter.PersonSumDiff());
+        PersonSumListAdapter adapter = new PersonSumListAdapter(new PersonSumListAdapter.PersonSumDiff());
+        adapter.setContactsHelper(contactsHelper);
+        return adapter;
     }
 
     @Override
@@ -95,57 +135,72 @@ public class PersonSumListFragment
     protected void subscribeToViewModel() {
         contactsHelper.isContactLinkingEnabled().observe(getViewLifecycleOwner(), enabled -> {
             contactLinkingEnabled = enabled;
-            updateRecyclerView(viewModel.getPersonsWithTransactions().getValue());
+            updateRecyclerView(viewModel.getPersonSummaries().getValue());
         });
 
-        viewModel.getPersonsWithTransactions().observe(getViewLifecycleOwner(), this::updateRecyclerView);
+        // contacts were loaded or changed since they were cached
+        contactsHelper.getContactsVersion().observe(getViewLifecycleOwner(),
+                version -> updateRecyclerView(viewModel.getPersonSummaries().getValue()));
+
+        viewModel.getPersonSummaries().observe(getViewLifecycleOwner(), this::updateRecyclerView);
         orderViewModel.getOrder().observe(getViewLifecycleOwner(), order -> {
             setOrderRadioButtonsCheckedStatus(order);
-            updateRecyclerView(viewModel.getPersonsWithTransactions().getValue());
+            updateRecyclerView(viewModel.getPersonSummaries().getValue());
         });
     }
 
-    private void updateRecyclerView(@Nullable List<PersonWithTransactions> pwtList) {
-        if(pwtList == null) return;
+    private void updateRecyclerView(@Nullable List<PersonSummary> summaries) {
+        if(summaries == null) return;
 
-        updateTotalHeader(PersonWithTransactions.getSum(pwtList));
+        updateTotalHeader(PersonSummary.getSum(summaries));
         @ColorInt int secondaryColorRGB = ColorUtils.getAttributeColor(requireContext(), R.attr.colorSecondary);
 
         // prepare sorting
-            int by = orderViewModel.getOrderBy();
-        boolean asc = orderViewModel.isOrderAscending();
-        Comparator<PersonWithTransactions> comparator;
-        switch (by) {
-            case ListOrderViewModel.ORDER_NAME:
-                comparator = Comparator.comparing(PersonWithTransactions::getName);
-                break;
-            case ListOrderViewModel.ORDER_DATE:
-                comparator = Comparator.comparing(PersonWithTransactions::getLastTxnTimestamp);
-                break;
-            case ListOrderViewModel.ORDER_AMOUNT:
-                comparator = Comparator.comparing(PersonWithTransactions::getSum);
-                break;
-            default:
-                comparator = Comparator.comparing(PersonWithTransactions::getLastTxnTimestamp);
+        Comparator<PersonSummary> comparator = PersonSummary.getComparator(
+                orderViewModel.getOrderBy(),
+                orderViewModel.isOrderAscending());
+
+        if (contactLinkingEnabled) {
+            // resolves all linked contacts with a few queries, before their photos are loaded
+            contactsHelper.resolveContacts(summaries.stream()
+                    .map(summary -> summary.person.linkedContactUri)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
         }
 
-        // create PersonWithAvatar instance for every PersonWithTransactions
+        // create PersonWithAvatar instance for every PersonSummary
         // and apply ordering
-        // TODO would be great to determine, which avatars need to be recalculated and only submit those
+        // contacts that are not cached yet are loaded in the background when their item is bound
+        // avatar drawables are only created for persons whose avatar changed, the others are
+        // taken over from the last update
+        Map<AvatarKey, Drawable> avatars = new HashMap<>();
         adapter.submitList(
-                pwtList.stream()
-                        .sorted(asc ? comparator : comparator.reversed())
-                        .map(pwt -> new PersonSumListAdapter.PersonWithAvatar(
-                        pwt,
-                        contactsHelper.makeAvatarDrawable(
-                                contactLinkingEnabled ? contactsHelper.getContactImage(pwt.person.linkedContactUri) : null,
-                                pwt.person.getColor(secondaryColorRGB)
-                        )
-                )).collect(Collectors.toList()));
+                summaries.stream()
+                        .sorted(comparator)
+                        .map(summary -> {
+                            Uri contactUri = contactLinkingEnabled ? summary.person.linkedContactUri : null;
+                            ContactsHelper.Contact contact = contactsHelper.getCachedContact(contactUri);
+                            Bitmap photo = contact != null ? contact.getPhoto() : null;
+                            AvatarKey key = new AvatarKey(summary.person.idPerson,
+                                    contactUri,
+                                    summary.person.getColorIndex(),
+                                    photo != null ? contact.getPhotoVersion() : AvatarKey.NO_PHOTO);
+                            Drawable avatar = avatarCache.get(key);
+                            if (avatar == null) {
+                                avatar = contactsHelper.makeAvatarDrawable(photo, summary.person.getColor(secondaryColorRGB));
+                            }
+                            avatars.put(key, avatar);
+                            return new PersonSumListAdapter.PersonWithAvatar(
+                                    summary,
+                                    avatar,
+                                    contact == null ? contactUri : null);
+                        }).collect(Collectors.toList()));
+        // only keep the avatars of the current persons
+        avatarCache = avatars;
 
 
         // show or hide empty-screen
-        boolean empty = pwtList.isEmpty();
+        boolean empty = summaries.isEmpty();
         recyclerView.setVisibility(empty?View.GONE:View.VISIBLE);
         emptyView.setVisibility(empty?View.VISIBLE:View.GONE);
     }
@@ -236,14 +291,13 @@ public class PersonSumListFragment
             int sum = adapter.getCurrentList()
                     .stream()
                     .filter(personWithAvatar ->
-                            selectionTracker.getSelection().contains((long) personWithAvatar.pwt.person.idPerson)
+                            selectionTracker.getSelection().contains((long) personWithAvatar.summary.person.idPerson)
                     )
-                    .mapToInt(
-                            personWithAvatar -> Transaction.getSum(personWithAvatar.pwt.transactions))
+                    .mapToInt(personWithAvatar -> personWithAvatar.summary.sum)
                     .sum();
             mode.setSubtitle(getResources().getString(
                     R.string.actionmode_sum,
-                    Transaction.formatMonetaryAmount(sum, Utilities.getNrOfDecimals(requireContext()))
+                    displaySettings.formatAmount(sum)
             ));
         } else {
             mode.setSubtitle(null);
@@ -277,11 +331,8 @@ public class PersonSumListFragment
         // ask for confirmation
         AlertDialog.Builder builder = new MaterialAlertDialogBuilder(requireActivity());
         builder.setPositiveButton(R.string.delete_dialog_confirm, (dialog, id) -> {
-            for (Long idPerson : selection) {
-                // Room uses the primary key (idPerson) to find the row to be deleted, so an
-                // empty Person with the correct id will suffice
-                viewModel.delete(new Person(idPerson.intValue()));
-            }
+            // delete all selected persons at once (single db transaction)
+            viewModel.delete(getSelectedIds(selection));
             selectionTracker.clearSelection();
             Snackbar.make(requireView(),
                     getResources().getQuantityString(R.plurals.person_sum_list_snackbar_deleted, deleteCount, deleteCount),
@@ -1,6 +1,7 @@
 package org.ebur.debitum.ui.list;
 
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -9,6 +10,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.graphics.drawable.RoundedBitmapDrawable;
 import androidx.core.view.ViewCompat;
 import androidx.fragment.app.FragmentManager;
@@ -20,10 +22,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import org.ebur.debitum.R;
 import org.ebur.debitum.database.Person;
-import org.ebur.debitum.database.PersonWithTransactions;
-import org.ebur.debitum.database.Transaction;
-import org.ebur.debitum.util.ColorUtils;
-import org.ebur.debitum.util.Utilities;
+import org.ebur.debitum.database.PersonSummary;
+import org.ebur.debitum.util.DisplaySettings;
+import org.ebur.debitum.viewModel.ContactsHelper;
 
 class PersonSumListViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
     private final View itemView;
@@ -53,17 +54,17 @@ class PersonSumListViewHolder extends RecyclerView.ViewHolder implements View.On
         return new PersonSumListViewHolder(view);
     }
 
-    public void bind(@NonNull PersonWithTransactions pwt, Drawable avatar, boolean isSelected) {
-        nameView.setText(pwt.person.name);
-        sumView.setText(Transaction.getFormattedSum(pwt.transactions, false, Utilities.getNrOfDecimals(itemView.getContext())));
+    public void bind(@NonNull PersonSummary summary, Drawable avatar, boolean isSelected, @NonNull DisplaySettings displaySettings) {
+        nameView.setText(summary.person.name);
+        sumView.setText(displaySettings.formatAmount(Math.abs(summary.sum)));
 
-        person = pwt.person;
+        person = summary.person;
 
-        int sign = Transaction.getSumSign(pwt.transactions);
+        int sign = summary.getSumSign();
         switch(sign) {
             case 1:
                 oweLentLabelView.setText(R.string.person_sum_list_you_owe);
-                sumView.setTextColor(ColorUtils.getOweColor(sumView.getContext()));
+                sumView.setTextColor(displaySettings.getOweColor());
                 break;
             case 0:
                 oweLentLabelView.setText(R.string.person_sum_list_no_debt);
@@ -71,7 +72,7 @@ class PersonSumListViewHolder extends RecyclerView.ViewHolder implements View.On
                 break;
             case -1:
                 oweLentLabelView.setText(R.string.person_sum_list_you_lent);
-                sumView.setTextColor(ColorUtils.getLentColor(sumView.getContext()));
+                sumView.setTextColor(displaySettings.getLentColor());
         }
 
         String letter = avatar instanceof RoundedBitmapDrawable
@@ -87,6 +88,17 @@ class PersonSumListViewHolder extends RecyclerView.ViewHolder implements View.On
         itemView.setActivated(isSelected);
     }
 
+    /**
+     * Loads the contact at contactUri (including its photo) in the background. Once it is cached,
+     * the list is updated via ContactsHelper.getContactsVersion, which binds the avatar from
+     * PersonSumListFragment's avatar cache.
+     * @param contactUri null if there is nothing to load
+     */
+    public void loadAvatar(@Nullable Uri contactUri, @NonNull ContactsHelper contactsHelper) {
+        if (contactUri == null) return;
+        contactsHelper.loadContact(contactUri, (uri, contact) -> contactsHelper.notifyContactsChanged());
+    }
+
     @Override
     public void onClick(View v) {
         NavController navController = NavHostFragment.findNavController(FragmentManager.findFragment(v));
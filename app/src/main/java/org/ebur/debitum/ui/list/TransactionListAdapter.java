@@ -3,17 +3,20 @@ package org.ebur.debitum.ui.list;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
 import androidx.recyclerview.selection.SelectionTracker;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
 import org.ebur.debitum.database.TransactionWithPerson;
+import org.ebur.debitum.util.DisplaySettings;
 
 public class TransactionListAdapter
-        extends ListAdapter<TransactionWithPerson, TransactionListViewHolder>
+        extends PagingDataAdapter<TransactionWithPerson, TransactionListViewHolder>
         implements AbstractBaseListFragment.Adapter {
 
     private SelectionTracker<Long> selectionTracker = null;
+    private DisplaySettings displaySettings = null;
 
     public TransactionListAdapter(@NonNull DiffUtil.ItemCallback<TransactionWithPerson> diffCallback) {
         super(diffCallback);
@@ -29,15 +32,23 @@ public class TransactionListAdapter
     @Override
     public void onBindViewHolder(@NonNull TransactionListViewHolder holder, int position) {
         TransactionWithPerson current = getItem(position);
-        holder.bind(current, selectionTracker.isSelected(getItemId(position)));
+        // current is null if the row is a placeholder for a not yet loaded page
+        if (current == null) {
+            holder.bindPlaceholder();
+        } else {
+            holder.bind(current, selectionTracker.isSelected(getItemId(position)), displaySettings);
+        }
     }
 
     @Override
     public long getItemId(int position) {
-        return getItem(position).transaction.idTransaction;
+        // peek does not trigger loading pages, unlike getItem
+        TransactionWithPerson twp = peek(position);
+        return twp == null ? RecyclerView.NO_ID : twp.transaction.idTransaction;
     }
 
     public void setSelectionTracker(SelectionTracker<Long> selectionTracker) { this.selectionTracker = selectionTracker; }
+    public void setDisplaySettings(DisplaySettings displaySettings) { this.displaySettings = displaySettings; }
 
     static class TransactionDiff extends DiffUtil.ItemCallback<TransactionWithPerson> {
 
@@ -30,18 +30,15 @@ import com.google.android.material.transition.MaterialContainerTransform;
 import org.ebur.debitum.R;
 import org.ebur.debitum.database.Person;
 import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.database.TransactionFilter;
 import org.ebur.debitum.database.TransactionWithPerson;
 import org.ebur.debitum.ui.EditPersonFragment;
 import org.ebur.debitum.ui.SettingsFragment;
 import org.ebur.debitum.ui.edit_transaction.EditTransactionFragment;
-import org.ebur.debitum.util.Utilities;
 import org.ebur.debitum.viewModel.PersonFilterViewModel;
 import org.ebur.debitum.viewModel.TransactionListViewModel;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
 
 public class TransactionListFragment
         extends AbstractBaseListFragment <
@@ -87,6 +84,11 @@ public class TransactionListFragment
                              ViewGroup container,
                              Bundle savedInstanceState) {
         personFilterViewModel = new ViewModelProvider(requireActivity()).get(PersonFilterViewModel.class);
+        // set Person filter if in argument (before subscribing to the viewModel, which needs it)
+        Bundle args = getArguments();
+        if (args != null && args.containsKey(ARG_FILTER_PERSON)) {
+            personFilterViewModel.setFilterPerson(args.getParcelable(ARG_FILTER_PERSON));
+        }
         View root = super.onCreateView(inflater, container, savedInstanceState); assert root != null;
         setupFilterBar(root);
         return root;
@@ -94,11 +96,6 @@ public class TransactionListFragment
 
     private void setupFilterBar(@NonNull View root) {
         filterBar = root.findViewById(R.id.filter_bar);
-        // set Person filter if in argument
-        Bundle args = getArguments();
-        if (args != null && args.containsKey(ARG_FILTER_PERSON)) {
-            personFilterViewModel.setFilterPerson(args.getParcelable(ARG_FILTER_PERSON));
-        }
 
         filterBar.getMenu().findItem(R.id.miDismiss_filter).setOnMenuItemClickListener(item -> {
             dismissFilterBar();
@@ -128,7 +125,11 @@ public class TransactionListFragment
             @Override
             public void onItemRangeInserted(int positionStart, int itemCount) {
                 super.onItemRangeInserted(positionStart, itemCount);
-                recyclerView.scrollToPosition(positionStart);
+                // pages being appended while scrolling are inserted as well, so only scroll if
+                // rows were inserted at the very top
+                if (positionStart == 0) {
+                    recyclerView.scrollToPosition(0);
+                }
             }
         });
     }
@@ -140,19 +141,35 @@ public class TransactionListFragment
 
     @Override
     protected void subscribeToViewModel() {
-        viewModel.getMoneyTransactions().observe(getViewLifecycleOwner(), transactions -> {
-            Person filterPerson = personFilterViewModel.getFilterPerson();
-            List<TransactionWithPerson> listForAdapter = filter(transactions, filterPerson);
-            updateTotalHeader(TransactionWithPerson.getSum(listForAdapter));
-            adapter.submitList(listForAdapter);
-
-            // show or hide empty-screen
-            boolean empty = transactions.isEmpty();
+        viewModel.setFilter(getFilter());
+        viewModel.getTransactions().observe(getViewLifecycleOwner(),
+                pagingData -> adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
+        viewModel.getTotal().observe(getViewLifecycleOwner(), total -> {
+            updateTotalHeader(total.total);
+
+            // show or hide empty-screen (only if there are no transactions at all, not if just
+            // the filter does not match any)
+            boolean empty = total.count == 0 && !isFiltered();
             recyclerView.setVisibility(empty?View.GONE:View.VISIBLE);
             emptyView.setVisibility(empty?View.VISIBLE:View.GONE);
         });
     }
 
+    /**
+     * @return the filter describing the transactions to be shown, as set by the filter bar
+     */
+    @NonNull
+    protected TransactionFilter getFilter() {
+        return TransactionFilter.money(getFilterPersonId());
+    }
+
+    /**
+     * @return true if not all transactions of the list's type are shown
+     */
+    protected boolean isFiltered() {
+        return personFilterViewModel.getFilterPerson() != null;
+    }
+
     // ---------------------------
     // Toolbar Menu event handling
     // ---------------------------
@@ -186,7 +203,7 @@ public class TransactionListFragment
             }
             mode.setSubtitle(getResources().getString(
                     R.string.actionmode_sum,
-                    Transaction.formatMonetaryAmount(sum, Utilities.getNrOfDecimals(requireContext()))
+                    displaySettings.formatAmount(sum)
             ));
         } else {
             mode.setSubtitle(null);
@@ -214,11 +231,8 @@ public class TransactionListFragment
         // ask for confirmation
         AlertDialog.Builder builder = new MaterialAlertDialogBuilder(requireActivity());
         builder.setPositiveButton(R.string.delete_dialog_confirm, (dialog, id) -> {
-            for (Long idTransaction : selection) {
-                // Room uses the primary key (idTransaction) to find the row to be deleted, so an
-                // empty Transaction with the correct id will suffice
-                viewModel.delete(new Transaction(idTransaction.intValue()));
-            }
+            // delete all selected transactions at once (single db transaction)
+            viewModel.delete(getSelectedIds(selection));
             Snackbar.make(requireView(),
                     getResources().getQuantityString(R.plurals.transaction_list_snackbar_deleted, deleteCount, deleteCount),
                     Snackbar.LENGTH_LONG)
@@ -242,7 +256,7 @@ public class TransactionListFragment
                     EditTransactionFragment.ARG_PRESET_DESCRIPTION,
                     getString(R.string.debt_settlement_money_description,
                             txn.description,
-                            Utilities.formatDate(txn.timestamp, requireContext())
+                            displaySettings.formatDate(txn.timestamp)
                     )
             );
             args.putString(EditTransactionFragment.ARG_PRESET_NAME, viewModel.getPersonFromDatabase(txn.idPerson).name);
@@ -256,13 +270,10 @@ public class TransactionListFragment
     // Person filter
     // -------------
 
-    protected List<TransactionWithPerson> filter(List<TransactionWithPerson> transactions, @Nullable Person filterPerson) {
-        if (transactions == null) return null;
-        if (filterPerson == null) return new ArrayList<>(transactions);
-            // http://javatricks.de/tricks/liste-filtern
-        else return transactions.stream()
-                .filter(twp -> twp.person.equals(filterPerson))
-                .collect(Collectors.toList());
+    @Nullable
+    protected Integer getFilterPersonId() {
+        Person filterPerson = personFilterViewModel.getFilterPerson();
+        return filterPerson == null ? null : filterPerson.idPerson;
     }
 
     private void dismissFilterBar() {
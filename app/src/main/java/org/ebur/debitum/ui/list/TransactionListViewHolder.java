@@ -9,6 +9,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.res.ResourcesCompat;
 import androidx.fragment.app.FragmentManager;
 import androidx.navigation.NavController;
@@ -19,8 +21,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import org.ebur.debitum.R;
 import org.ebur.debitum.database.TransactionWithPerson;
 import org.ebur.debitum.ui.edit_transaction.EditTransactionFragment;
-import org.ebur.debitum.util.ColorUtils;
-import org.ebur.debitum.util.Utilities;
+import org.ebur.debitum.util.DisplaySettings;
 
 class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener{
     private final TextView txnNameView;
@@ -44,17 +45,17 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
         itemView.setOnClickListener(this);
     }
 
-    public void bind(TransactionWithPerson twp, boolean isSelected) {
+    public void bind(TransactionWithPerson twp, boolean isSelected, @NonNull DisplaySettings displaySettings) {
         idTransaction = twp.transaction.idTransaction;
         txnNameView.setText(twp.person.name);
         txnDescriptionView.setText(twp.transaction.description);
-        txnAmountView.setText(twp.transaction.getFormattedAmount(false, Utilities.getNrOfDecimals(itemView.getContext())));
+        txnAmountView.setText(displaySettings.formatAmount(twp.transaction, false));
         if (twp.transaction.isReturned()) {
             // set date text and background/text color
             Resources res = itemView.getResources();
             txnTimestampView.setText(res.getString(R.string.transaction_list_date_given_returned,
-                    Utilities.formatDate(twp.transaction.timestamp, itemView.getContext()),
-                    Utilities.formatDate(twp.transaction.timestampReturned, itemView.getContext())));
+                    displaySettings.formatDate(twp.transaction.timestamp),
+                    displaySettings.formatDate(twp.transaction.timestampReturned)));
             itemView.setBackgroundColor(ResourcesCompat.getColor(res,
                     R.color.returned_item_background,
                     null));
@@ -64,7 +65,7 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
             txnNameView.setTextColor(textColor);
             txnGaveReceivedView.setTextColor(textColor);
         } else {
-            txnTimestampView.setText(Utilities.formatDate(twp.transaction.timestamp, itemView.getContext()));
+            txnTimestampView.setText(displaySettings.formatDate(twp.transaction.timestamp));
         }
 
         int gaveReceivedString;
@@ -73,12 +74,12 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
         switch (sign) {
             case -1:
                 gaveReceivedString = R.string.transaction_list_received;
-                amountColor = ColorUtils.getLentColor(txnAmountView.getContext());
+                amountColor = displaySettings.getLentColor();
                 break;
             case 0:
             case 1:
                 gaveReceivedString = R.string.transaction_list_gave;
-                amountColor = ColorUtils.getOweColor(txnAmountView.getContext());
+                amountColor = displaySettings.getOweColor();
                 break;
             default:
                 throw new IllegalStateException("Unexpected value (sign): " + sign);
@@ -96,6 +97,18 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
         itemView.setActivated(isSelected);
     }
 
+    // empty row shown while the page containing the transaction is loaded
+    public void bindPlaceholder() {
+        idTransaction = 0;
+        txnNameView.setText(null);
+        txnDescriptionView.setText(null);
+        txnAmountView.setText(null);
+        txnGaveReceivedView.setText(null);
+        txnTimestampView.setText(null);
+        txnHasImagesView.setVisibility(View.GONE);
+        itemView.setActivated(false);
+    }
+
     static TransactionListViewHolder create(ViewGroup parent) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.item_transaction_list, parent, false);
@@ -105,7 +118,10 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
     // anonymous implementation of androidx.recyclerview.selection.ItemDetailsLookup.ItemDetails
     //     https://proandroiddev.com/a-guide-to-recyclerview-selection-3ed9f2381504?gi=ee4affe1b9d3
     //     https://developer.android.com/reference/androidx/recyclerview/selection/package-summary
+    @Nullable
     ItemDetailsLookup.ItemDetails<Long> getItemDetails() {
+        // placeholders cannot be selected
+        if (getItemId() == RecyclerView.NO_ID) return null;
         return new ItemDetailsLookup.ItemDetails<Long>() {
             @Override
             public int getPosition() { return getAdapterPosition(); }
@@ -120,6 +136,7 @@ class TransactionListViewHolder extends RecyclerView.ViewHolder implements View.
     // so even when no on click actions was needed, an empty onClick method would be mandatory
     @Override
     public void onClick(View v) {
+        if (idTransaction == 0) return; // placeholder
         // navigate to edit txn dialog
         Bundle args = new Bundle();
         args.putInt(EditTransactionFragment.ARG_ID_TRANSACTION, idTransaction);
@@ -0,0 +1,214 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lists all images belonging to a backup together with their size, modification time and
+ * SHA-256 hash, and whether the image is contained in this backup's zip or in one of the
+ * backups it is based upon (incremental backup). A full backup has no base and contains all
+ * images, an incremental backup only the images that are new or changed since its base.
+ *
+ * Text format (UTF-8), a header of key=value lines, an empty line and one line per image:
+ * included(0|1) TAB size TAB lastModified TAB sha256 TAB filename
+ */
+public class BackupManifest {
+
+    private static final String HEADER = "# debitum backup manifest";
+    private static final int FORMAT_VERSION = 1;
+
+    public static class Entry {
+        @NonNull public final String filename;
+        public final long size;
+        public final long lastModified;
+        @NonNull public final String sha256;
+        // true if the image is contained in the zip this manifest belongs to
+        public final boolean included;
+
+        public Entry(@NonNull String filename, long size, long lastModified, @NonNull String sha256, boolean included) {
+            this.filename = filename;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sha256 = sha256;
+            this.included = included;
+        }
+
+        /**
+         * @return true if file very probably has the same content as the file this entry was
+         * created for, judged by size and modification time (so the file need not be read)
+         */
+        public boolean isUnchanged(@NonNull File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+
+    @NonNull public final String id;
+    @Nullable public final String baseId;
+    public final long created;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private BackupManifest(@NonNull String id, @Nullable String baseId, long created) {
+        this.id = id;
+        this.baseId = baseId;
+        this.created = created;
+    }
+
+    /**
+     * @param base manifest of the backup the new backup is based upon, null for a full backup
+     */
+    @NonNull
+    public static BackupManifest create(@Nullable BackupManifest base) {
+        return new BackupManifest(UUID.randomUUID().toString(),
+                base == null ? null : base.id,
+                System.currentTimeMillis());
+    }
+
+    public boolean isFull() {
+        return baseId == null;
+    }
+
+    public void add(@NonNull Entry entry) {
+        entries.put(entry.filename, entry);
+    }
+
+    @Nullable
+    public Entry get(@NonNull String filename) {
+        return entries.get(filename);
+    }
+
+    @NonNull
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    // ---------------------
+    // Reading and writing
+    // ---------------------
+
+    /**
+     * Writes the manifest to out, which is not closed.
+     */
+    public void write(@NonNull OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(HEADER + "\n");
+        writer.write("version=" + FORMAT_VERSION + "\n");
+        writer.write("id=" + id + "\n");
+        if (baseId != null) writer.write("base=" + baseId + "\n");
+        writer.write("created=" + created + "\n");
+        writer.write("\n");
+        for (Entry entry : entries.values()) {
+            writer.write((entry.included ? "1" : "0") + "\t"
+                    + entry.size + "\t"
+                    + entry.lastModified + "\t"
+                    + entry.sha256 + "\t"
+                    + entry.filename + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads a manifest from in, which is not closed.
+     * @throws IOException if in does not contain a valid manifest
+     */
+    @NonNull
+    public static BackupManifest read(@NonNull InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) throw new IOException("Not a backup manifest");
+
+        Map<String, String> header = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int separator = line.indexOf('=');
+            if (separator < 0) throw new IOException("Invalid manifest header line: " + line);
+            header.put(line.substring(0, separator), line.substring(separator + 1));
+        }
+        String version = header.get("version");
+        String id = header.get("id");
+        if (version == null || Integer.parseInt(version) > FORMAT_VERSION || id == null) {
+            throw new IOException("Unsupported backup manifest");
+        }
+        String created = header.get("created");
+        BackupManifest manifest = new BackupManifest(id,
+                header.get("base"),
+                created == null ? 0 : Long.parseLong(created));
+
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            // the filename is the last field, so it may contain anything but line breaks
+            String[] fields = line.split("\t", 5);
+            if (fields.length != 5) throw new IOException("Invalid manifest line: " + line);
+            try {
+                manifest.add(new Entry(fields[4],
+                        Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2]),
+                        fields[3],
+                        fields[0].equals("1")));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid manifest line: " + line);
+            }
+        }
+        return manifest;
+    }
+
+    // ---------------------
+    // Backup chains
+    // ---------------------
+
+    /**
+     * Orders the manifests of a full backup and its incremental backups so that each backup
+     * follows the one it is based upon.
+     * @return the manifests, starting with the full backup and ending with the latest one
+     * @throws IncompleteChainException if the manifests do not form exactly one complete chain
+     */
+    @NonNull
+    public static List<BackupManifest> orderChain(@NonNull List<BackupManifest> manifests) throws IncompleteChainException {
+        Map<String, BackupManifest> byId = new HashMap<>();
+        Map<String, BackupManifest> byBaseId = new HashMap<>();
+        for (BackupManifest manifest : manifests) {
+            if (byId.put(manifest.id, manifest) != null) {
+                throw new IncompleteChainException("Backup " + manifest.id + " was given twice");
+            }
+            if (manifest.baseId != null && byBaseId.put(manifest.baseId, manifest) != null) {
+                throw new IncompleteChainException("More than one backup is based on " + manifest.baseId);
+            }
+        }
+
+        // find the full backup and follow the chain from there
+        BackupManifest current = null;
+        for (BackupManifest manifest : manifests) {
+            if (manifest.isFull()) {
+                if (current != null) throw new IncompleteChainException("More than one full backup");
+                current = manifest;
+            }
+        }
+        if (current == null) throw new IncompleteChainException("The full backup is missing");
+
+        List<BackupManifest> chain = new ArrayList<>(manifests.size());
+        while (current != null) {
+            chain.add(current);
+            current = byBaseId.get(current.id);
+        }
+        if (chain.size() != manifests.size()) {
+            throw new IncompleteChainException("The backups do not form a complete chain");
+        }
+        return chain;
+    }
+}
@@ -0,0 +1,374 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads one backup zip (or a full backup together with its incremental backups, see
+ * BackupManifest) written by BackupWriter in a single pass per zip.
+ *
+ * The database entry has to be the first entry of each zip and is checked before anything else
+ * is extracted, so foreign or broken zips are refused early. Every entry is streamed into a
+ * staging location on the same file system as its final place, so that installing the restored
+ * files (see getDatabaseFile and moveImages) only needs renaming. Entry checksums are verified by
+ * ZipInputStream while reading, see BackupValidator for the other checks.
+ */
+public class BackupReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // every sqlite database file starts with this header
+    private static final byte[] SQLITE_HEADER = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * A backup zip that can be opened for reading.
+     */
+    public interface Archive {
+        @NonNull
+        InputStream open() throws IOException;
+
+        /**
+         * @return size of the zip in bytes, or -1 if unknown (used for reporting progress only)
+         */
+        long length();
+
+        /**
+         * @return the zip's central directory, if it was checked beforehand (see
+         * BackupValidator::checkArchive); the entries read are then compared with it
+         */
+        @Nullable
+        default BackupValidator.ArchiveInfo getInfo() {
+            return null;
+        }
+    }
+
+    private final File dbStagingFile;
+    private final File imageStagingDir;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    private long bytesDone;
+    private long bytesTotal;
+
+    @Nullable private File dbFile;
+    @Nullable private File prefsFile;
+    // staged image files by their final filename
+    private final Map<String, File> images = new HashMap<>();
+
+    /**
+     * @param dbStagingFile where to stage the database, has to be on the same file system as the
+     *                      app's database. Files with this name and a suffix are created, too.
+     * @param imageStagingDir where to stage images and preferences, has to be on the same file
+     *                        system as the image directory. It is created and must not be used
+     *                        for anything else, as it is deleted by cleanUp.
+     */
+    public BackupReader(@NonNull File dbStagingFile, @NonNull File imageStagingDir) {
+        this.dbStagingFile = dbStagingFile;
+        this.imageStagingDir = imageStagingDir;
+    }
+
+    /**
+     * Makes a running (or the next) call of read stop with a CancellationException as soon as
+     * the current chunk is read. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Extracts the given backups into the staging locations. If more than one backup is given,
+     * they have to be a full backup and all of its incremental backups (in any order), each image
+     * is then taken from the latest backup containing it.
+     * @throws InvalidBackupException if a zip is not a backup
+     * @throws IncompleteChainException if the backups do not form a complete chain
+     * @throws CancellationException if cancel() was called while reading
+     */
+    public void read(@NonNull List<? extends Archive> archives, @Nullable BackupWriter.ProgressListener listener) throws IOException {
+        bytesDone = 0;
+        bytesTotal = 0;
+        for (Archive archive : archives) {
+            // an unknown size only makes the progress less precise
+            bytesTotal += Math.max(archive.length(), 0);
+        }
+
+        List<BackupManifest> manifests = new ArrayList<>();
+        Map<String, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < archives.size(); i++) {
+            BackupManifest manifest = readArchive(i, archives.get(i), listener);
+            if (manifest != null) {
+                manifests.add(manifest);
+                indexById.put(manifest.id, i);
+            } else if (archives.size() > 1) {
+                // backups made before incremental backups existed are always full backups
+                throw new InvalidBackupException(InvalidBackupException.NO_MANIFEST,
+                        "Backup " + (i + 1) + " is not an incremental backup");
+            }
+        }
+
+        if (manifests.isEmpty()) {
+            // single backup without manifest: take all of its files
+            selectArchive(0, null, null);
+        } else {
+            List<BackupManifest> chain = BackupManifest.orderChain(manifests);
+            BackupManifest latest = chain.get(chain.size() - 1);
+            selectArchive(indexById.get(latest.id), chain, indexById);
+        }
+    }
+
+    /**
+     * @return the restored database, to be moved into place by the caller; null before read
+     */
+    @Nullable
+    public File getDatabaseFile() {
+        return dbFile;
+    }
+
+    /**
+     * @return the restored preferences, null if the backup does not contain them (old backups)
+     */
+    @Nullable
+    public File getPreferencesFile() {
+        return prefsFile;
+    }
+
+    /**
+     * Renames the restored images into imageDir, replacing existing files of the same name.
+     * @return the number of images that could not be moved
+     */
+    public int moveImages(@NonNull File imageDir) {
+        if (!imageDir.isDirectory()) imageDir.mkdirs();
+        int failed = 0;
+        for (Map.Entry<String, File> image : images.entrySet()) {
+            if (!image.getValue().renameTo(new File(imageDir, image.getKey()))) failed++;
+        }
+        images.clear();
+        return failed;
+    }
+
+    /**
+     * Deletes all staged files that were not moved into place.
+     */
+    public void cleanUp() {
+        FileUtils.deleteDir(imageStagingDir);
+        File[] dbFiles = dbStagingFile.getParentFile() == null ? null : dbStagingFile.getParentFile().listFiles();
+        if (dbFiles != null) {
+            for (File file : dbFiles) {
+                if (file.getName().startsWith(dbStagingFile.getName())) file.delete();
+            }
+        }
+    }
+
+    // extracts all entries of archive, returns its manifest (null if it has none)
+    @Nullable
+    private BackupManifest readArchive(int index, @NonNull Archive archive, @Nullable BackupWriter.ProgressListener listener) throws IOException {
+        File stagingDir = getStagingDir(index);
+        if (!stagingDir.isDirectory() && !stagingDir.mkdirs()) {
+            throw new IOException("Could not create " + stagingDir);
+        }
+
+        Map<String, BackupValidator.ArchiveEntry> expected = new HashMap<>();
+        BackupValidator.ArchiveInfo info = archive.getInfo();
+        if (info != null) {
+            for (BackupValidator.ArchiveEntry entry : info.entries) expected.put(entry.name, entry);
+        }
+
+        long bytesBefore = bytesDone;
+        BackupManifest manifest = null;
+        try (ZipInputStream zis = new ZipInputStream(new CountingInputStream(
+                new BufferedInputStream(archive.open(), BUFFER_SIZE), listener))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            ZipEntry entry = zis.getNextEntry();
+            if (entry == null || !entry.getName().equals(BackupWriter.ENTRY_DB)) {
+                throw new InvalidBackupException(InvalidBackupException.NO_DATABASE,
+                        "The zip does not start with " + BackupWriter.ENTRY_DB);
+            }
+            extractDatabase(zis, getDbStagingFile(index), buffer);
+            checkEntry(entry, expected, info != null);
+
+            while ((entry = zis.getNextEntry()) != null) {
+                if (entry.isDirectory()) continue;
+                String name = entry.getName();
+                if (name.equals(BackupWriter.ENTRY_MANIFEST)) {
+                    manifest = BackupManifest.read(zis);
+                } else {
+                    extract(zis, new File(stagingDir, checkFilename(name)), buffer);
+                }
+                checkEntry(entry, expected, info != null);
+            }
+            if (!expected.isEmpty()) {
+                throw new InvalidBackupException(InvalidBackupException.CORRUPT_ARCHIVE,
+                        "Entries missing: " + expected.keySet());
+            }
+        } catch (ZipException | EOFException e) {
+            // ZipInputStream verifies each entry's CRC and size while reading it
+            throw new InvalidBackupException(InvalidBackupException.CORRUPT_ARCHIVE, String.valueOf(e.getMessage()));
+        }
+        // the zip's central directory at its end is not read by ZipInputStream
+        bytesDone = Math.max(bytesDone, bytesBefore + archive.length());
+        if (listener != null) listener.onProgress(bytesDone, Math.max(bytesTotal, bytesDone));
+        return manifest;
+    }
+
+    // compares a completely read entry (whose crc and size are known then) with the central
+    // directory, removing it from expected
+    private static void checkEntry(@NonNull ZipEntry entry,
+                                   @NonNull Map<String, BackupValidator.ArchiveEntry> expected,
+                                   boolean hasInfo) throws InvalidBackupException {
+        if (!hasInfo) return;
+        BackupValidator.ArchiveEntry expectedEntry = expected.remove(entry.getName());
+        if (expectedEntry == null
+                || expectedEntry.crc != entry.getCrc()
+                || expectedEntry.size != entry.getSize()) {
+            throw new InvalidBackupException(InvalidBackupException.CORRUPT_ARCHIVE,
+                    "Entry " + entry.getName() + " does not match the central directory");
+        }
+    }
+
+    // extracts the database entry, refusing it right away if it does not start like a database
+    private void extractDatabase(@NonNull ZipInputStream zis, @NonNull File dest, @NonNull byte[] buffer) throws IOException {
+        int headerLength = 0;
+        while (headerLength < SQLITE_HEADER.length) {
+            int length = zis.read(buffer, headerLength, SQLITE_HEADER.length - headerLength);
+            if (length < 0) break;
+            headerLength += length;
+        }
+        if (headerLength < SQLITE_HEADER.length
+                || !Arrays.equals(Arrays.copyOf(buffer, SQLITE_HEADER.length), SQLITE_HEADER)) {
+            throw new InvalidBackupException(InvalidBackupException.NOT_A_DATABASE,
+                    BackupWriter.ENTRY_DB + " is not a database");
+        }
+        try (OutputStream out = new FileOutputStream(dest)) {
+            out.write(buffer, 0, headerLength);
+            copy(zis, out, buffer);
+        }
+    }
+
+    private void extract(@NonNull ZipInputStream zis, @NonNull File dest, @NonNull byte[] buffer) throws IOException {
+        try (OutputStream out = new FileOutputStream(dest)) {
+            copy(zis, out, buffer);
+        }
+    }
+
+    private void copy(@NonNull InputStream in, @NonNull OutputStream out, @NonNull byte[] buffer) throws IOException {
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            if (cancelled.get()) throw new CancellationException("Restore cancelled");
+            out.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Picks the database and preferences of the archive with index latest and the images of the
+     * latest manifest, each from the newest archive of the chain containing it. Without chain,
+     * all images of the archive are taken.
+     */
+    private void selectArchive(int latest,
+                               @Nullable List<BackupManifest> chain,
+                               @Nullable Map<String, Integer> indexById) throws IOException {
+        dbFile = getDbStagingFile(latest);
+        File latestDir = getStagingDir(latest);
+        File prefs = new File(latestDir, BackupWriter.ENTRY_PREFS);
+        prefsFile = prefs.exists() ? prefs : null;
+
+        images.clear();
+        if (chain == null || indexById == null) {
+            File[] files = latestDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.equals(prefs)) images.put(file.getName(), file);
+                }
+            }
+            return;
+        }
+        // images deleted in the meantime are not part of the latest manifest
+        for (BackupManifest.Entry entry : chain.get(chain.size() - 1).getEntries()) {
+            File image = null;
+            for (int i = chain.size() - 1; i >= 0 && image == null; i--) {
+                BackupManifest.Entry chainEntry = chain.get(i).get(entry.filename);
+                if (chainEntry != null && chainEntry.included) {
+                    image = new File(getStagingDir(indexById.get(chain.get(i).id)), entry.filename);
+                }
+            }
+            if (image == null || !image.exists()) {
+                throw new IOException("Image " + entry.filename + " is missing in the backups");
+            }
+            images.put(entry.filename, image);
+        }
+    }
+
+    @NonNull
+    private File getStagingDir(int index) {
+        return new File(imageStagingDir, Integer.toString(index));
+    }
+
+    @NonNull
+    private File getDbStagingFile(int index) {
+        return new File(dbStagingFile.getPath() + "." + index);
+    }
+
+    /**
+     * Backups only contain plain filenames, anything else could be used to write outside of the
+     * staging directory (Zip Slip, see https://snyk.io/research/zip-slip-vulnerability).
+     */
+    @NonNull
+    private static String checkFilename(@NonNull String name) throws IOException {
+        if (!BackupValidator.isPlainFilename(name)) {
+            throw new InvalidBackupException(InvalidBackupException.CORRUPT_ARCHIVE, "Invalid entry name: " + name);
+        }
+        return name;
+    }
+
+    // counts the bytes read from the (compressed) zip and reports them as progress
+    private class CountingInputStream extends FilterInputStream {
+        @Nullable private final BackupWriter.ProgressListener listener;
+
+        CountingInputStream(@NonNull InputStream in, @Nullable BackupWriter.ProgressListener listener) {
+            super(in);
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) count(length);
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) count(skipped);
+            return skipped;
+        }
+
+        private void count(long length) {
+            bytesDone += length;
+            if (listener != null) listener.onProgress(bytesDone, Math.max(bytesTotal, bytesDone));
+        }
+    }
+}
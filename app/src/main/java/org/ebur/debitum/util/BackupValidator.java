@@ -0,0 +1,273 @@
+package org.ebur.debitum.util;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pre-flight checks for restoring a backup, none of which touches the app's live data:
+ * <ul>
+ *     <li>checkArchive reads only the zip's central directory (the table of contents at its
+ *     end), which finds truncated or foreign zips without reading their content.</li>
+ *     <li>The entries' CRCs are verified by ZipInputStream while BackupReader streams them into
+ *     the staging area.</li>
+ *     <li>checkDatabase opens the staged database read-only and verifies its schema and
+ *     integrity before it replaces the live database.</li>
+ * </ul>
+ */
+public abstract class BackupValidator {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_LENGTH = 22;
+    private static final int ZIP64_LOCATOR_LENGTH = 20;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+
+    /**
+     * An entry as listed in the central directory of a zip.
+     */
+    public static class ArchiveEntry {
+        @NonNull public final String name;
+        public final long crc;
+        public final long compressedSize;
+        public final long size;
+        public final long offset;
+
+        ArchiveEntry(@NonNull String name, long crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * The central directory of a zip.
+     */
+    public static class ArchiveInfo {
+        // ordered as in the zip file
+        @NonNull public final List<ArchiveEntry> entries;
+        // uncompressed size of all entries
+        public final long totalSize;
+
+        ArchiveInfo(@NonNull List<ArchiveEntry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+            long total = 0;
+            for (ArchiveEntry entry : entries) total += entry.size;
+            this.totalSize = total;
+        }
+    }
+
+    // -----------------
+    // Central directory
+    // -----------------
+
+    /**
+     * Reads the central directory of the zip in channel and checks that the zip is complete, that
+     * it starts with the database entry and that all entries have plain, unique filenames.
+     * Only the end of the file is read.
+     * @throws InvalidBackupException if the zip is damaged or no backup
+     */
+    @NonNull
+    public static ArchiveInfo checkArchive(@NonNull FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        long endOffset = findEndOfCentralDirectory(channel, fileSize);
+        ByteBuffer end = read(channel, endOffset, END_LENGTH);
+        long entryCount = end.getShort(10) & 0xffff;
+        long cdSize = end.getInt(12) & 0xffffffffL;
+        long cdOffset = end.getInt(16) & 0xffffffffL;
+
+        // zips larger than 4 GiB or with more than 65535 entries have a zip64 end record
+        if (entryCount == 0xffff || cdSize == ZIP64_MAGIC || cdOffset == ZIP64_MAGIC) {
+            if (endOffset < ZIP64_LOCATOR_LENGTH) throw corrupt("zip64 locator missing");
+            ByteBuffer locator = read(channel, endOffset - ZIP64_LOCATOR_LENGTH, ZIP64_LOCATOR_LENGTH);
+            if (locator.getInt(0) != ZIP64_LOCATOR_SIGNATURE) throw corrupt("zip64 locator missing");
+            long zip64EndOffset = locator.getLong(8);
+            if (zip64EndOffset < 0 || zip64EndOffset + 56 > endOffset) throw corrupt("invalid zip64 end record offset");
+            ByteBuffer zip64End = read(channel, zip64EndOffset, 56);
+            if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) throw corrupt("zip64 end record missing");
+            entryCount = zip64End.getLong(32);
+            cdSize = zip64End.getLong(40);
+            cdOffset = zip64End.getLong(48);
+            endOffset = zip64EndOffset;
+        }
+        if (cdOffset < 0 || cdSize < 0 || cdOffset + cdSize > endOffset || cdSize > Integer.MAX_VALUE) {
+            throw corrupt("invalid central directory position");
+        }
+
+        List<ArchiveEntry> entries = readCentralDirectory(read(channel, cdOffset, (int) cdSize), entryCount, cdOffset);
+        if (entries.isEmpty() || entries.get(0).offset != 0 || !entries.get(0).name.equals(BackupWriter.ENTRY_DB)) {
+            throw new InvalidBackupException(InvalidBackupException.NO_DATABASE,
+                    "The zip does not start with " + BackupWriter.ENTRY_DB);
+        }
+        if (read(channel, 0, 4).getInt(0) != LOCAL_HEADER_SIGNATURE) throw corrupt("invalid local header");
+        return new ArchiveInfo(entries);
+    }
+
+    private static long findEndOfCentralDirectory(@NonNull FileChannel channel, long fileSize) throws IOException {
+        if (fileSize < END_LENGTH) throw corrupt("file too short");
+        // the end record is followed by a comment of at most 64 KiB
+        int tailLength = (int) Math.min(fileSize, END_LENGTH + MAX_COMMENT_LENGTH);
+        long tailOffset = fileSize - tailLength;
+        ByteBuffer tail = read(channel, tailOffset, tailLength);
+        for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE
+                    && i + END_LENGTH + (tail.getShort(i + 20) & 0xffff) == tailLength) {
+                return tailOffset + i;
+            }
+        }
+        // typically an incompletely written or downloaded backup
+        throw corrupt("end of central directory not found, the file is incomplete");
+    }
+
+    @NonNull
+    private static List<ArchiveEntry> readCentralDirectory(@NonNull ByteBuffer cd, long entryCount, long cdOffset) throws IOException {
+        List<ArchiveEntry> entries = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int pos = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (pos + CENTRAL_HEADER_LENGTH > cd.limit() || cd.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw corrupt("invalid central directory entry " + i);
+            }
+            long crc = cd.getInt(pos + 16) & 0xffffffffL;
+            long compressedSize = cd.getInt(pos + 20) & 0xffffffffL;
+            long size = cd.getInt(pos + 24) & 0xffffffffL;
+            int nameLength = cd.getShort(pos + 28) & 0xffff;
+            int extraLength = cd.getShort(pos + 30) & 0xffff;
+            int commentLength = cd.getShort(pos + 32) & 0xffff;
+            long offset = cd.getInt(pos + 42) & 0xffffffffL;
+            int next = pos + CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+            if (next > cd.limit()) throw corrupt("invalid central directory entry " + i);
+
+            byte[] nameBytes = new byte[nameLength];
+            cd.position(pos + CENTRAL_HEADER_LENGTH);
+            cd.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // values that do not fit into 32 bit are stored in the zip64 extra field, in this order
+            int extra = pos + CENTRAL_HEADER_LENGTH + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = cd.getShort(extra) & 0xffff;
+                int length = cd.getShort(extra + 2) & 0xffff;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == ZIP64_MAGIC && field + 8 <= extraEnd) { size = cd.getLong(field); field += 8; }
+                    if (compressedSize == ZIP64_MAGIC && field + 8 <= extraEnd) { compressedSize = cd.getLong(field); field += 8; }
+                    if (offset == ZIP64_MAGIC && field + 8 <= extraEnd) { offset = cd.getLong(field); }
+                }
+                extra += 4 + length;
+            }
+
+            if (offset < 0 || offset >= cdOffset || compressedSize < 0 || size < 0) {
+                throw corrupt("invalid central directory entry " + name);
+            }
+            if (!name.endsWith("/")) {
+                if (!isPlainFilename(name)) throw corrupt("invalid entry name " + name);
+                if (!names.add(name)) throw corrupt("duplicate entry " + name);
+                entries.add(new ArchiveEntry(name, crc, compressedSize, size, offset));
+            }
+            pos = next;
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.offset, b.offset));
+        return entries;
+    }
+
+    /**
+     * @return true if name can be used as filename inside a directory without escaping it
+     */
+    static boolean isPlainFilename(@NonNull String name) {
+        return !name.isEmpty() && !name.contains("/") && !name.contains("\\")
+                && !name.equals(".") && !name.equals("..");
+    }
+
+    @NonNull
+    private static ByteBuffer read(@NonNull FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw corrupt("unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @NonNull
+    private static InvalidBackupException corrupt(@NonNull String message) {
+        return new InvalidBackupException(InvalidBackupException.CORRUPT_ARCHIVE, message);
+    }
+
+    // --------
+    // Database
+    // --------
+
+    /**
+     * Opens dbFile read-only and checks that it passes sqlite's quick_check and is a debitum
+     * database this app version can open: its version must not be newer than currentVersion and
+     * its schema identity hash must be the one recorded for its version.
+     * @param identityHashes the schema identity hashes room recorded for each database version,
+     *                       indexed by version; null entries are not checked
+     * @throws InvalidBackupException if any of the checks fails
+     */
+    public static void checkDatabase(@NonNull File dbFile, int currentVersion, @NonNull String[] identityHashes) throws InvalidBackupException {
+        // the default error handler would delete a corrupt file, which is not up to a check
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(dbFile.getPath(), null,
+                SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS,
+                corruptDb -> { })) {
+            String quickCheck = queryString(db, "PRAGMA quick_check(1)");
+            if (!"ok".equals(quickCheck)) {
+                throw new InvalidBackupException(InvalidBackupException.CORRUPT_DATABASE,
+                        "quick_check failed: " + quickCheck);
+            }
+            int version = db.getVersion();
+            if (version > currentVersion) {
+                throw new InvalidBackupException(InvalidBackupException.NEWER_VERSION,
+                        "Database version " + version + " is newer than " + currentVersion);
+            }
+            // room keeps the hash of the schema a database was created with in room_master_table
+            boolean hasMasterTable = queryString(db, "SELECT name FROM sqlite_master "
+                    + "WHERE type = 'table' AND name = 'room_master_table'") != null;
+            String identityHash = version > 0 && hasMasterTable
+                    ? queryString(db, "SELECT identity_hash FROM room_master_table WHERE id = 42")
+                    : null;
+            if (identityHash == null) {
+                throw new InvalidBackupException(InvalidBackupException.UNKNOWN_SCHEMA, "Not a debitum database");
+            }
+            String expectedHash = version < identityHashes.length ? identityHashes[version] : null;
+            if (expectedHash != null && !expectedHash.equals(identityHash)) {
+                throw new InvalidBackupException(InvalidBackupException.UNKNOWN_SCHEMA,
+                        "Unknown schema " + identityHash + " for database version " + version);
+            }
+        } catch (SQLiteException e) {
+            throw new InvalidBackupException(InvalidBackupException.CORRUPT_DATABASE, String.valueOf(e.getMessage()));
+        }
+    }
+
+    @Nullable
+    private static String queryString(@NonNull SQLiteDatabase db, @NonNull String sql) {
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a backup zip (database snapshot, preferences and transaction images) in a single pass
+ * directly into an OutputStream, without creating any intermediate copies besides the database
+ * snapshot itself.
+ *
+ * If the manifest of a previous backup is given, only images that are new or changed since then
+ * are written (incremental backup). The zip's last entry is the BackupManifest describing all
+ * images, which is calculated while writing them.
+ */
+public class BackupWriter {
+
+    public static final String ENTRY_DB = "debitum.db";
+    public static final String ENTRY_PREFS = "debitum-preferences.xml";
+    public static final String ENTRY_MANIFEST = "debitum-manifest.txt";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // compressing these again costs a lot of time for virtually no gain, so they are written
+    // without compression
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "webp", "gif", "heic", "heif", "zip", "pdf"));
+
+    public interface ProgressListener {
+        /**
+         * Called from the writing thread whenever another chunk has been written
+         * @param bytesDone number of bytes of the source files written so far
+         * @param bytesTotal number of bytes of all source files
+         */
+        void onProgress(long bytesDone, long bytesTotal);
+    }
+
+    private final File dbFile;
+    private final Properties prefs;
+    private final List<File> images;
+    @Nullable private final BackupManifest base;
+    private final BackupManifest manifest;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    private long bytesDone;
+    private long bytesTotal;
+
+    /**
+     * @param dbFile consistent snapshot of the database, see AppDatabase::backupDatabase
+     * @param prefs the app's preferences
+     * @param images transaction images to be included
+     * @param base manifest of the backup this one shall be based upon, null for a full backup
+     */
+    public BackupWriter(@NonNull File dbFile, @NonNull Properties prefs, @NonNull List<File> images, @Nullable BackupManifest base) {
+        this.dbFile = dbFile;
+        this.prefs = prefs;
+        this.images = images;
+        this.base = base;
+        this.manifest = BackupManifest.create(base);
+    }
+
+    /**
+     * @return the manifest of the backup, complete after write returned successfully
+     */
+    @NonNull
+    public BackupManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Makes a running (or the next) call of write stop with a CancellationException as soon as
+     * the current chunk is written. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Writes the backup zip into out, which is closed afterwards.
+     * @throws CancellationException if cancel() was called while writing
+     */
+    public void write(@NonNull OutputStream out, @Nullable ProgressListener listener) throws IOException {
+        // determine images that have to be written, unchanged ones are taken over from base
+        List<File> changedImages = new ArrayList<>();
+        for (File image : images) {
+            BackupManifest.Entry baseEntry = base == null ? null : base.get(image.getName());
+            if (baseEntry != null && baseEntry.isUnchanged(image)) {
+                manifest.add(new BackupManifest.Entry(image.getName(),
+                        baseEntry.size, baseEntry.lastModified, baseEntry.sha256, false));
+            } else {
+                changedImages.add(image);
+            }
+        }
+
+        bytesDone = 0;
+        bytesTotal = dbFile.length();
+        for (File image : changedImages) {
+            bytesTotal += image.length();
+        }
+
+        try (ZipOutputStream zipOut = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE))) {
+            zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
+            writeFile(zipOut, ENTRY_DB, dbFile, listener);
+            writePreferences(zipOut);
+            for (File image : changedImages) {
+                // images are compressed already
+                zipOut.setLevel(isCompressed(image.getName()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+                String sha256 = writeFile(zipOut, image.getName(), image, listener);
+                manifest.add(new BackupManifest.Entry(image.getName(),
+                        image.length(), image.lastModified(), sha256, true));
+            }
+            zipOut.setLevel(Deflater.DEFAULT_COMPRESSION);
+            zipOut.putNextEntry(new ZipEntry(ENTRY_MANIFEST));
+            manifest.write(zipOut);
+            zipOut.closeEntry();
+        }
+    }
+
+    /**
+     * @return the SHA-256 hash of file, as hex string
+     */
+    @NonNull
+    private String writeFile(@NonNull ZipOutputStream zipOut,
+                             @NonNull String entryName,
+                             @NonNull File file,
+                             @Nullable ProgressListener listener) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setTime(file.lastModified());
+        zipOut.putNextEntry(entry);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                if (cancelled.get()) throw new CancellationException("Backup cancelled");
+                zipOut.write(buffer, 0, length);
+                digest.update(buffer, 0, length);
+                bytesDone += length;
+                if (listener != null) listener.onProgress(bytesDone, bytesTotal);
+            }
+        }
+        zipOut.closeEntry();
+        return toHex(digest.digest());
+    }
+
+    // stores the preferences as a java properties xml file
+    private void writePreferences(@NonNull ZipOutputStream zipOut) throws IOException {
+        // storeToXML might close the stream it writes to, so write to a buffer first
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        prefs.storeToXML(buffer, "");
+        zipOut.putNextEntry(new ZipEntry(ENTRY_PREFS));
+        buffer.writeTo(zipOut);
+        zipOut.closeEntry();
+    }
+
+    private static boolean isCompressed(@NonNull String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 && COMPRESSED_EXTENSIONS.contains(filename.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    @NonNull
+    static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every java implementation has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @NonNull
+    static String toHex(@NonNull byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package org.ebur.debitum.util;
+
+import android.content.Context;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.ui.SettingsFragment;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Snapshot of the settings that determine how amounts and dates are displayed in the lists.
+ *
+ * Reading them from the SharedPreferences (and resources) on every bind is too expensive for
+ * scrolling large lists, so a snapshot is taken once and replaced whenever one of the
+ * preferences in PREF_KEYS changes. The date format is not thread-safe, thus every thread formats
+ * with its own copy of it.
+ */
+public class DisplaySettings {
+
+    /** Preferences whose change makes a snapshot stale */
+    public static final String[] PREF_KEYS = {
+            SettingsFragment.PREF_KEY_DECIMALS,
+            SettingsFragment.PREF_KEY_DATE_FORMAT,
+            SettingsFragment.PREF_KEY_INVERT_COLORS
+    };
+
+    private final int decimals;
+    @NonNull private final DateFormat dateFormat;
+    @ColorInt private final int lentColor;
+    @ColorInt private final int oweColor;
+
+    private final ThreadLocal<DateFormat> localDateFormat = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return (DateFormat) dateFormat.clone();
+        }
+    };
+
+    public DisplaySettings(int decimals, @NonNull DateFormat dateFormat, @ColorInt int lentColor, @ColorInt int oweColor) {
+        this.decimals = decimals;
+        this.dateFormat = (DateFormat) dateFormat.clone();
+        // we must not apply any timezone-hour-adding or subtraction here, see #28
+        this.dateFormat.setTimeZone(TimeZone.getTimeZone("Etc/UTC"));
+        this.lentColor = lentColor;
+        this.oweColor = oweColor;
+    }
+
+    @NonNull
+    public static DisplaySettings from(@NonNull Context context) {
+        return new DisplaySettings(Utilities.getNrOfDecimals(context),
+                Utilities.getDateFormat(context),
+                ColorUtils.getLentColor(context),
+                ColorUtils.getOweColor(context));
+    }
+
+    public static boolean isAffectedBy(@Nullable String prefKey) {
+        for (String key : PREF_KEYS) {
+            if (key.equals(prefKey)) return true;
+        }
+        return false;
+    }
+
+    public int getDecimals() {
+        return decimals;
+    }
+
+    @NonNull
+    public String formatAmount(int amount) {
+        return Transaction.formatMonetaryAmount(amount, decimals);
+    }
+
+    @NonNull
+    public String formatAmount(@NonNull Transaction transaction, boolean signed) {
+        return transaction.getFormattedAmount(signed, decimals);
+    }
+
+    @Nullable
+    public String formatDate(@Nullable Date date) {
+        return date == null ? null : localDateFormat.get().format(date);
+    }
+
+    /**
+     * @return the color, that should be used to color lent amounts (i.e. txn amount < 0)
+     */
+    @ColorInt
+    public int getLentColor() {
+        return lentColor;
+    }
+
+    /**
+     * @return the color, that should be used to color owed amounts (i.e. txn amount > 0)
+     */
+    @ColorInt
+    public int getOweColor() {
+        return oweColor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DisplaySettings)) return false;
+        DisplaySettings that = (DisplaySettings) o;
+        return decimals == that.decimals
+                && lentColor == that.lentColor
+                && oweColor == that.oweColor
+                && dateFormat.equals(that.dateFormat);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = decimals;
+        result = 31 * result + dateFormat.hashCode();
+        result = 31 * result + lentColor;
+        result = 31 * result + oweColor;
+        return result;
+    }
+}
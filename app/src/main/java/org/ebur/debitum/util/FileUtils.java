@@ -15,13 +15,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Locale;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 public abstract class FileUtils {
     public static final String TAG = "FileUtils";
@@ -69,36 +64,6 @@ public abstract class FileUtils {
         return dir.delete();
     }
 
-    /**
-     *
-     * @param dir directory in which to look for existing images
-     * @return for all files in dir whose name represents a 8 digit hex value, the maximum is
-     * determined and max + 1 as 8 digit hex value returned
-     */
-    @NonNull
-    public static String getNextImageFilename(@NonNull File dir) {
-        if (dir.exists()) {
-            // create sorted list of all files whose names represent 8-digit hex numbers
-            // and find its maximum
-            String[] dirlist = dir.list();
-            if (dirlist == null || dirlist.length == 0) {
-                return "00000001";
-            } else {
-                String maxFilename =  new ArrayList<String>(Arrays.asList(dirlist))
-                        .stream()
-                        .filter(s -> s.matches("^[0123456789abcdef]{8}\\.[^.]+$")) // only consider 8-digit-hex representations
-                        .map(s -> s.replaceAll("\\.[^.]+$", "")) // remove extension
-                        .max(String::compareTo)
-                        .orElse("00000000");
-                Long num = Long.parseLong(maxFilename, 16) + 1;
-                return String.format(Locale.getDefault(), "%08x", num);
-            }
-        } else {
-            dir.mkdirs();
-            return "00000000";
-        }
-    }
-
     @NonNull
     public static String getFileExtension(@NonNull Uri uri, @NonNull ContentResolver resolver) {
         Cursor cursor = resolver.query(uri, null, null, null, null);
@@ -109,37 +74,14 @@ public abstract class FileUtils {
         return filename.replaceAll(".*\\.", "");
     }
 
-    /*public static void zip(List<File> source, File dest) throws IOException {
-        // check preconditions
-        if (dest.exists())
-            throw new IOException("Target file already exists.");
-        if (dest.getParentFile() != null && !dest.getParentFile().canWrite())
-            throw new IOException("Target file's parent directory cannot be written into.");
-
-        zipInternal(source, dest);
-    }*/
-
-    public static void zip(List<File> source, Uri destUri, @NonNull Context context) throws IOException {
-        // https://www.baeldung.com/java-compress-and-uncompress
-        ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(destUri, "w");
-        FileOutputStream fos = new FileOutputStream(pfd.getFileDescriptor());
-
-        ZipOutputStream zipOut = new ZipOutputStream(fos);
-        for (File fileToZip : source) {
-            FileInputStream fis = new FileInputStream(fileToZip);
-            ZipEntry zipEntry = new ZipEntry(fileToZip.getName());
-            zipOut.putNextEntry(zipEntry);
-
-            byte[] bytes = new byte[1024];
-            int length;
-            while((length = fis.read(bytes)) >= 0) {
-                zipOut.write(bytes, 0, length);
-            }
-            fis.close();
+    /**
+     * @return size of the document at uri in bytes, -1 if it is unknown
+     */
+    public static long getFileSize(@NonNull Uri uri, @NonNull ContentResolver resolver) {
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst() || cursor.isNull(0)) return -1;
+            return cursor.getLong(0);
         }
-        zipOut.close();
-        fos.close();
-        pfd.close();
     }
 
     // https://www.baeldung.com/java-compress-and-uncompress
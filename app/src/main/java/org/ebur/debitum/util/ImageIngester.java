@@ -0,0 +1,380 @@
+package org.ebur.debitum.util;
+
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Imports a picked image into the image directory. Depending on Options the image is
+ * <ul>
+ *     <li>scaled down so that its longer side does not exceed a maximum dimension,</li>
+ *     <li>rotated/mirrored according to its EXIF orientation, so it is displayed correctly
+ *     without it,</li>
+ *     <li>re-encoded as JPEG or WebP of the given quality, which drops all metadata (location,
+ *     camera, ...); images with transparency are stored as PNG instead of JPEG,</li>
+ * </ul>
+ * or copied if no processing is configured or the image is too large to be decoded in memory.
+ * Copies of JPEG, PNG and WebP images are stripped of identifying metadata (see
+ * PRIVATE_EXIF_TAGS), other formats are copied unchanged. The result is stored content-addressed, see
+ * ImageStore. Runs synchronously, so it has to be called
+ * from a background thread.
+ */
+public class ImageIngester {
+
+    public static final String PREF_KEY_MAX_DIMENSION = "image_max_dimension";
+    public static final String PREF_KEY_FORMAT = "image_format";
+    public static final String PREF_KEY_QUALITY = "image_quality";
+
+    public static final String FORMAT_ORIGINAL = "original";
+    public static final String FORMAT_JPEG = "jpeg";
+    public static final String FORMAT_WEBP = "webp";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // bytes per pixel of decoded bitmaps (ARGB_8888)
+    private static final int BYTES_PER_PIXEL = 4;
+    // formats ExifInterface can write
+    private static final Set<String> EXIF_WRITABLE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "webp"));
+    // location, device and owner of copied images; the orientation is kept, as copies are not
+    // rotated
+    private static final String[] PRIVATE_EXIF_TAGS = {
+            ExifInterface.TAG_GPS_VERSION_ID, ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LATITUDE, ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE, ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE, ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_SATELLITES, ExifInterface.TAG_GPS_STATUS,
+            ExifInterface.TAG_GPS_MEASURE_MODE, ExifInterface.TAG_GPS_DOP,
+            ExifInterface.TAG_GPS_SPEED_REF, ExifInterface.TAG_GPS_SPEED,
+            ExifInterface.TAG_GPS_TRACK_REF, ExifInterface.TAG_GPS_TRACK,
+            ExifInterface.TAG_GPS_IMG_DIRECTION_REF, ExifInterface.TAG_GPS_IMG_DIRECTION,
+            ExifInterface.TAG_GPS_MAP_DATUM, ExifInterface.TAG_GPS_DEST_LATITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_LATITUDE, ExifInterface.TAG_GPS_DEST_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_DEST_LONGITUDE, ExifInterface.TAG_GPS_DEST_BEARING_REF,
+            ExifInterface.TAG_GPS_DEST_BEARING, ExifInterface.TAG_GPS_DEST_DISTANCE_REF,
+            ExifInterface.TAG_GPS_DEST_DISTANCE, ExifInterface.TAG_GPS_PROCESSING_METHOD,
+            ExifInterface.TAG_GPS_AREA_INFORMATION, ExifInterface.TAG_GPS_DATESTAMP,
+            ExifInterface.TAG_GPS_DIFFERENTIAL, ExifInterface.TAG_GPS_H_POSITIONING_ERROR,
+            ExifInterface.TAG_MAKE, ExifInterface.TAG_MODEL, ExifInterface.TAG_SOFTWARE,
+            ExifInterface.TAG_LENS_MAKE, ExifInterface.TAG_LENS_MODEL,
+            ExifInterface.TAG_LENS_SERIAL_NUMBER, ExifInterface.TAG_BODY_SERIAL_NUMBER,
+            ExifInterface.TAG_MAKER_NOTE, ExifInterface.TAG_IMAGE_UNIQUE_ID,
+            ExifInterface.TAG_ARTIST, ExifInterface.TAG_CAMERA_OWNER_NAME,
+            ExifInterface.TAG_COPYRIGHT, ExifInterface.TAG_USER_COMMENT,
+            ExifInterface.TAG_IMAGE_DESCRIPTION, ExifInterface.TAG_XMP
+    };
+
+    public interface ProgressListener {
+        /**
+         * Called from the importing thread whenever another chunk of the picked image was read
+         * @param bytesDone number of bytes read so far
+         * @param bytesTotal size of the picked image
+         */
+        void onProgress(long bytesDone, long bytesTotal);
+    }
+
+    public static class Options {
+        // 0 means no limit
+        public final int maxDimension;
+        // one of the FORMAT_* constants
+        @NonNull public final String format;
+        // 0 - 100
+        public final int quality;
+
+        public Options(int maxDimension, @NonNull String format, int quality) {
+            this.maxDimension = maxDimension;
+            this.format = format;
+            this.quality = quality;
+        }
+
+        /**
+         * @return the options set in the app's settings, see root_preferences.xml for the defaults
+         */
+        @NonNull
+        public static Options fromPreferences(@NonNull SharedPreferences prefs) {
+            return new Options(Integer.parseInt(prefs.getString(PREF_KEY_MAX_DIMENSION, "2048")),
+                    prefs.getString(PREF_KEY_FORMAT, FORMAT_JPEG),
+                    Integer.parseInt(prefs.getString(PREF_KEY_QUALITY, "85")));
+        }
+
+        boolean keepsOriginal() {
+            return maxDimension <= 0 && FORMAT_ORIGINAL.equals(format);
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Options options;
+
+    public ImageIngester(@NonNull ContentResolver resolver, @NonNull Options options) {
+        this.resolver = resolver;
+        this.options = options;
+    }
+
+    /**
+     * Imports the image at uri into dir under its content-addressed name (see ImageStore). If
+     * the resulting image is stored in dir already, the existing file is returned.
+     * @param pins if given, the imported image is pinned, see ImageStore::store
+     * @return the imported file
+     */
+    @NonNull
+    public File ingest(@NonNull Uri uri, @NonNull File dir, @Nullable ImageStore.Pins pins, @Nullable ProgressListener listener) throws IOException {
+        String originalExtension = FileUtils.getFileExtension(uri, resolver);
+        Bitmap bitmap = options.keepsOriginal() ? null : decode(uri, listener);
+
+        // images that cannot be decoded (or shall not be processed) are copied
+        boolean hasAlpha = bitmap != null && bitmap.hasAlpha();
+        String extension = bitmap == null ? originalExtension : getExtension(options.format, originalExtension, hasAlpha);
+        // write to a temporary file first, so no incomplete image ends up in dir
+        File tmpFile = ImageStore.createTempFile(dir);
+        String sha256;
+        try {
+            if (bitmap == null) {
+                copy(uri, tmpFile, listener);
+                stripMetadata(tmpFile, extension);
+                // hashed after stripping, so the name matches the stored content
+                sha256 = ImageStore.sha256(tmpFile);
+            } else {
+                // hash the content while writing
+                MessageDigest digest = ImageStore.newDigest();
+                try (OutputStream out = new DigestOutputStream(new FileOutputStream(tmpFile), digest)) {
+                    if (!bitmap.compress(getCompressFormat(options.format, originalExtension, hasAlpha), options.quality, out)) {
+                        throw new IOException("Could not encode image");
+                    }
+                } finally {
+                    bitmap.recycle();
+                }
+                sha256 = ImageStore.toHex(digest.digest());
+            }
+        } catch (IOException | RuntimeException e) {
+            tmpFile.delete();
+            throw e;
+        }
+        return ImageStore.store(tmpFile, sha256, extension, dir, pins);
+    }
+
+    // removes PRIVATE_EXIF_TAGS from a copied image, if ExifInterface can write its format
+    private static void stripMetadata(@NonNull File image, @NonNull String extension) throws IOException {
+        if (!EXIF_WRITABLE_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT))) return;
+        ExifInterface exif;
+        try {
+            exif = new ExifInterface(image);
+        } catch (IOException e) {
+            // not readable as its extension claims, nothing to strip
+            return;
+        }
+        boolean changed = false;
+        for (String tag : PRIVATE_EXIF_TAGS) {
+            if (exif.getAttribute(tag) != null) {
+                exif.setAttribute(tag, null);
+                changed = true;
+            }
+        }
+        if (changed) exif.saveAttributes();
+    }
+
+    // decodes the image subsampled to about the target size, then scales and rotates it exactly
+    @Nullable
+    private Bitmap decode(@NonNull Uri uri, @Nullable ProgressListener listener) throws IOException {
+        BitmapFactory.Options bitmapOptions = new BitmapFactory.Options();
+        bitmapOptions.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, bitmapOptions);
+        }
+        int width = bitmapOptions.outWidth;
+        int height = bitmapOptions.outHeight;
+        if (width <= 0 || height <= 0) return null;
+
+        int rotation;
+        boolean flipped;
+        try (InputStream in = open(uri)) {
+            ExifInterface exif = new ExifInterface(in);
+            rotation = exif.getRotationDegrees();
+            flipped = exif.isFlipped();
+        } catch (IOException e) {
+            // no or unreadable exif data
+            rotation = 0;
+            flipped = false;
+        }
+
+        int[] targetSize = calculateTargetSize(width, height, options.maxDimension);
+        if (FORMAT_ORIGINAL.equals(options.format) && targetSize[0] == width && rotation == 0 && !flipped) {
+            // nothing to do, copy the image
+            return null;
+        }
+        bitmapOptions.inJustDecodeBounds = false;
+        bitmapOptions.inSampleSize = calculateInSampleSize(width, height, targetSize[0], targetSize[1]);
+        // e.g. huge images with maximum dimension "original": the sampled bitmap and its scaled
+        // or rotated copy have to fit into the heap, else the image is copied unchanged
+        long sampledBytes = (long) BYTES_PER_PIXEL
+                * (width / bitmapOptions.inSampleSize) * (height / bitmapOptions.inSampleSize);
+        if (2 * sampledBytes > getAvailableHeap()) return null;
+
+        Bitmap sampled;
+        long length = FileUtils.getFileSize(uri, resolver);
+        try (InputStream in = new ProgressInputStream(open(uri), length, listener)) {
+            sampled = BitmapFactory.decodeStream(in, null, bitmapOptions);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+        if (sampled == null) return null;
+
+        Matrix matrix = new Matrix();
+        float scale = Math.min(1f, (float) targetSize[0] / sampled.getWidth());
+        matrix.setScale(scale, scale);
+        matrix.postRotate(rotation);
+        if (flipped) matrix.postScale(-1, 1);
+        if (matrix.isIdentity()) return sampled;
+        Bitmap result;
+        try {
+            result = Bitmap.createBitmap(sampled, 0, 0, sampled.getWidth(), sampled.getHeight(), matrix, true);
+        } catch (OutOfMemoryError e) {
+            sampled.recycle();
+            return null;
+        }
+        if (result != sampled) sampled.recycle();
+        return result;
+    }
+
+    // bytes that can still be allocated on the java heap, which holds bitmap pixels up to API 25;
+    // since API 26 they are allocated natively, then this is a conservative limit
+    private static long getAvailableHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private void copy(@NonNull Uri uri, @NonNull File dest, @Nullable ProgressListener listener) throws IOException {
+        long length = FileUtils.getFileSize(uri, resolver);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new ProgressInputStream(open(uri), length, listener);
+             OutputStream out = new FileOutputStream(dest)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    @NonNull
+    private InputStream open(@NonNull Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new FileNotFoundException(uri.toString());
+        return in;
+    }
+
+    /**
+     * @return width and height of an image of width x height scaled down (never up) so that its
+     * longer side is at most maxDimension (0 for no limit)
+     */
+    @VisibleForTesting
+    @NonNull
+    public static int[] calculateTargetSize(int width, int height, int maxDimension) {
+        int longerSide = Math.max(width, height);
+        if (maxDimension <= 0 || longerSide <= maxDimension) return new int[]{width, height};
+        double scale = (double) maxDimension / longerSide;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    /**
+     * @return the largest power of two by which an image of width x height can be subsampled
+     * while still being at least targetWidth x targetHeight
+     */
+    @VisibleForTesting
+    public static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= targetWidth && height / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * @return the extension of a re-encoded image; JPEG cannot store transparency, so images with
+     * alpha are stored as PNG instead
+     */
+    @VisibleForTesting
+    @NonNull
+    public static String getExtension(@NonNull String format, @NonNull String originalExtension, boolean hasAlpha) {
+        switch (format) {
+            case FORMAT_JPEG: return hasAlpha ? "png" : "jpg";
+            case FORMAT_WEBP: return "webp";
+            default: return isPng(originalExtension) || hasAlpha ? "png" : "jpg";
+        }
+    }
+
+    // has to match getExtension
+    @SuppressWarnings("deprecation")
+    @NonNull
+    private static Bitmap.CompressFormat getCompressFormat(@NonNull String format, @NonNull String originalExtension, boolean hasAlpha) {
+        switch (format) {
+            case FORMAT_JPEG:
+                return hasAlpha ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+            case FORMAT_WEBP:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                        ? Bitmap.CompressFormat.WEBP_LOSSY
+                        : Bitmap.CompressFormat.WEBP;
+            default:
+                // only resized, keep png (e.g. screenshots) lossless
+                return isPng(originalExtension) || hasAlpha ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+        }
+    }
+
+    private static boolean isPng(@NonNull String extension) {
+        return extension.equalsIgnoreCase("png");
+    }
+
+    // reports the bytes read as progress, if the total length is known
+    private static class ProgressInputStream extends FilterInputStream {
+        private final long length;
+        @Nullable private final ProgressListener listener;
+        private long bytesRead;
+
+        ProgressInputStream(@NonNull InputStream in, long length, @Nullable ProgressListener listener) {
+            super(in);
+            this.length = length;
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count(read);
+            return read;
+        }
+
+        private void count(long read) {
+            bytesRead += read;
+            if (listener != null && length > 0) listener.onProgress(Math.min(bytesRead, length), length);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Transaction images are stored content-addressed: an image file is named by the SHA-256 hash of
+ * its content plus its extension. Identical images are thus stored only once, no matter how many
+ * transactions link them. The image table acts as reference count, a file is orphaned as soon as
+ * no row of the image table references its name.
+ *
+ * Images added by older versions of the app are named by sequential hex numbers ("legacy"
+ * filenames), see ImageRepository::migrateLegacyImages.
+ */
+public abstract class ImageStore {
+
+    private static final Pattern CONTENT_FILENAME = Pattern.compile("^[0-9a-f]{64}\\.[^.]+$");
+    private static final String TEMP_PREFIX = ".import";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Protects images that are stored, but not linked yet, from being deleted as orphans, see
+     * ImageGarbageCollector
+     */
+    public interface Pins {
+        void pin(@NonNull String filename);
+        void unpin(@NonNull Collection<String> filenames);
+    }
+
+    @NonNull
+    public static String getFilename(@NonNull String sha256, @NonNull String extension) {
+        return sha256 + "." + extension.toLowerCase(Locale.ROOT);
+    }
+
+    public static boolean isContentAddressed(@NonNull String filename) {
+        return CONTENT_FILENAME.matcher(filename).matches();
+    }
+
+    /**
+     * @return true if filename denotes a file that is still being written (or was left over by
+     * an interrupted import) and must not be treated as image
+     */
+    public static boolean isTemporary(@NonNull String filename) {
+        return filename.startsWith(".");
+    }
+
+    @NonNull
+    public static String getExtension(@NonNull String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot < 0 ? "" : filename.substring(dot + 1);
+    }
+
+    /**
+     * @return a new, empty file in dir that is guaranteed not to be used by another import
+     */
+    @NonNull
+    public static File createTempFile(@NonNull File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+        return File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, dir);
+    }
+
+    @NonNull
+    public static MessageDigest newDigest() {
+        return BackupWriter.newSha256Digest();
+    }
+
+    @NonNull
+    public static String toHex(@NonNull byte[] digest) {
+        return BackupWriter.toHex(digest);
+    }
+
+    /**
+     * @return the SHA-256 hash of file's content, as hex string
+     */
+    @NonNull
+    public static String sha256(@NonNull File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    @NonNull
+    public static File store(@NonNull File tmpFile, @NonNull String sha256, @NonNull String extension, @NonNull File dir) throws IOException {
+        return store(tmpFile, sha256, extension, dir, null);
+    }
+
+    /**
+     * Moves a completely written temporary file into dir under its content-addressed name. If
+     * dir already contains an image with the same content, tmpFile is deleted instead.
+     * @param pins if given, the image is pinned before it appears in (or is looked up in) dir, so
+     *             it cannot be collected before it is linked. The caller has to unpin it then.
+     * @return the stored image
+     */
+    @NonNull
+    public static File store(@NonNull File tmpFile, @NonNull String sha256, @NonNull String extension,
+                             @NonNull File dir, @Nullable Pins pins) throws IOException {
+        String filename = getFilename(sha256, extension);
+        File image = new File(dir, filename);
+        if (pins != null) pins.pin(filename);
+        if (image.isFile() || tmpFile.renameTo(image)) {
+            tmpFile.delete();
+            return image;
+        }
+        tmpFile.delete();
+        if (pins != null) pins.unpin(Collections.singletonList(filename));
+        throw new IOException("Could not move image to " + image);
+    }
+}
@@ -0,0 +1,14 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Thrown if the backups to be restored are not exactly one full backup and all of its incremental
+ * backups, see BackupManifest::orderChain
+ */
+public class IncompleteChainException extends InvalidBackupException {
+
+    public IncompleteChainException(@NonNull String message) {
+        super(INCOMPLETE_CHAIN, message);
+    }
+}
@@ -0,0 +1,28 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a file is not a debitum backup or is damaged, see BackupReader and BackupValidator.
+ * The reason allows showing a localized message.
+ */
+public class InvalidBackupException extends IOException {
+    public static final int NO_DATABASE = 0;
+    public static final int NOT_A_DATABASE = 1;
+    public static final int NO_MANIFEST = 2;
+    public static final int CORRUPT_ARCHIVE = 3;
+    public static final int CORRUPT_DATABASE = 4;
+    public static final int NEWER_VERSION = 5;
+    public static final int UNKNOWN_SCHEMA = 6;
+    public static final int NOT_ENOUGH_SPACE = 7;
+    public static final int INCOMPLETE_CHAIN = 8;
+
+    public final int reason;
+
+    public InvalidBackupException(int reason, @NonNull String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
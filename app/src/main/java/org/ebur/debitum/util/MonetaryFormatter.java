@@ -0,0 +1,119 @@
+package org.ebur.debitum.util;
+
+import androidx.annotation.NonNull;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats amounts given in fractions of the main currency (1/1, 1/10, 1/100 or 1/1000) as fixed
+ * point numbers with thousands separators.
+ *
+ * The output is the same as String.format(locale, "%,.{decimals}f", amount/10^decimals), but the
+ * digits are taken from the integer amount directly: there is no format string to be parsed, no
+ * double to be boxed and rounded, and the separators of a locale are looked up only once. The
+ * digits are written into a buffer owned by the calling thread, so the only allocation per call
+ * is the resulting String.
+ */
+public final class MonetaryFormatter {
+
+    public static final int MAX_DECIMALS = 3;
+
+    private static final ConcurrentHashMap<Locale, MonetaryFormatter> INSTANCES = new ConcurrentHashMap<>();
+
+    // longest possible output: sign, 10 digits and 9 grouping separators (grouping size 1)
+    private static final int BUFFER_SIZE = 20;
+    private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[BUFFER_SIZE];
+        }
+    };
+
+    private final char zeroDigit;
+    private final char decimalSeparator;
+    // '\0' if the locale does not group digits
+    private final char groupingSeparator;
+    private final int groupingSize;
+
+    private MonetaryFormatter(@NonNull Locale locale) {
+        // same lookups as java.util.Formatter
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        zeroDigit = symbols.getZeroDigit();
+        decimalSeparator = symbols.getDecimalSeparator();
+        NumberFormat numberFormat = NumberFormat.getNumberInstance(locale);
+        if (numberFormat instanceof DecimalFormat
+                && numberFormat.isGroupingUsed()
+                && ((DecimalFormat) numberFormat).getGroupingSize() > 0) {
+            groupingSeparator = symbols.getGroupingSeparator();
+            groupingSize = ((DecimalFormat) numberFormat).getGroupingSize();
+        } else {
+            groupingSeparator = '\0';
+            groupingSize = 0;
+        }
+    }
+
+    @NonNull
+    public static MonetaryFormatter getInstance(@NonNull Locale locale) {
+        return INSTANCES.computeIfAbsent(locale, MonetaryFormatter::new);
+    }
+
+    /**
+     * @param amount Amount to be formatted in fractions of the main currency
+     * @param decimals number of decimal places, between 0 and MAX_DECIMALS
+     * @return the formatted amount
+     */
+    @NonNull
+    public String format(int amount, int decimals) {
+        char[] buffer = BUFFER.get();
+        int start = write(buffer, amount, decimals);
+        return new String(buffer, start, buffer.length - start);
+    }
+
+    /**
+     * Appends the formatted amount to sb, e.g. for reusing one StringBuilder for many amounts
+     * @return sb
+     */
+    @NonNull
+    public StringBuilder formatTo(@NonNull StringBuilder sb, int amount, int decimals) {
+        char[] buffer = BUFFER.get();
+        int start = write(buffer, amount, decimals);
+        return sb.append(buffer, start, buffer.length - start);
+    }
+
+    /**
+     * Writes the formatted amount right-aligned into buffer
+     * @return index of the first char written
+     */
+    private int write(@NonNull char[] buffer, int amount, int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException("decimals must be an integer between 0 and " + MAX_DECIMALS);
+        }
+        // long, as -Integer.MIN_VALUE does not fit into an int
+        long value = Math.abs((long) amount);
+        int pos = buffer.length;
+
+        for (int i = 0; i < decimals; i++) {
+            buffer[--pos] = (char) (zeroDigit + value % 10);
+            value /= 10;
+        }
+        if (decimals > 0) buffer[--pos] = decimalSeparator;
+
+        int digits = 0;
+        do {
+            if (groupingSize > 0 && digits > 0 && digits % groupingSize == 0) {
+                buffer[--pos] = groupingSeparator;
+            }
+            buffer[--pos] = (char) (zeroDigit + value % 10);
+            value /= 10;
+            digits++;
+        } while (value > 0);
+
+        // java.util.Formatter does not localize the minus sign either
+        if (amount < 0) buffer[--pos] = '-';
+        return pos;
+    }
+}
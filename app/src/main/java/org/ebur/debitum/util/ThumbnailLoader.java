@@ -0,0 +1,199 @@
+package org.ebur.debitum.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ThumbnailUtils;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads square, center-cropped thumbnails of transaction images into ImageViews.
+ *
+ * Images are decoded on a background thread, subsampled (inSampleSize) to about the requested
+ * size instead of at full resolution. The thumbnails are kept in a memory cache limited by their
+ * byte count and stored as small jpegs in a disk cache next to the image directory, so showing
+ * the images of a transaction again is fast even after the app was restarted.
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final String THUMBNAIL_SUBDIR = "transaction-thumbnails";
+    private static final int THUMBNAIL_QUALITY = 85;
+    private static final int NUMBER_OF_THREADS = 2;
+
+    private static volatile ThumbnailLoader INSTANCE;
+
+    private final File thumbnailDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // the load running for each view, only accessed from the main thread
+    private final Map<ImageView, Future<?>> pendingLoads = new WeakHashMap<>();
+
+    private ThumbnailLoader(@NonNull Context context) {
+        thumbnailDir = new File(context.getExternalFilesDir(null), THUMBNAIL_SUBDIR);
+        // use an eighth of the memory available to the app
+        int cacheSize = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        memoryCache = new LruCache<String, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    @NonNull
+    public static ThumbnailLoader getInstance(@NonNull Context context) {
+        if (INSTANCE == null) {
+            synchronized (ThumbnailLoader.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ThumbnailLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Shows a thumbnail of image in view, immediately if it is in the memory cache, else as soon
+     * as it is loaded. Until then view is cleared. A load started for the same view before is
+     * cancelled, so views can safely be recycled.
+     * @param sizePx width and height of the thumbnail
+     */
+    @MainThread
+    public void load(@NonNull File image, @NonNull ImageView view, int sizePx) {
+        cancel(view);
+        String key = getKey(image, sizePx);
+        view.setTag(key);
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        pendingLoads.put(view, executor.submit(() -> {
+            Bitmap thumbnail = loadThumbnail(image, sizePx);
+            if (thumbnail == null) return;
+            memoryCache.put(key, thumbnail);
+            mainHandler.post(() -> {
+                // the view might have been bound to another image in the meantime
+                if (key.equals(view.getTag())) {
+                    pendingLoads.remove(view);
+                    view.setImageBitmap(thumbnail);
+                }
+            });
+        }));
+    }
+
+    /**
+     * Cancels loading a thumbnail into view, if it is still running.
+     */
+    @MainThread
+    public void cancel(@NonNull ImageView view) {
+        Future<?> pending = pendingLoads.remove(view);
+        if (pending != null) pending.cancel(false);
+        view.setTag(null);
+    }
+
+    /**
+     * Removes all thumbnails of image from the caches, e.g. because image was deleted.
+     */
+    public void evict(@NonNull File image) {
+        String keyPrefix = image.getAbsolutePath() + ":";
+        for (String key : memoryCache.snapshot().keySet()) {
+            if (key.startsWith(keyPrefix)) memoryCache.remove(key);
+        }
+        String prefix = image.getName() + ".";
+        File[] thumbnails = thumbnailDir.listFiles((dir, name) -> name.startsWith(prefix));
+        if (thumbnails != null) {
+            for (File thumbnail : thumbnails) thumbnail.delete();
+        }
+    }
+
+    // the key changes when the image file is replaced
+    @NonNull
+    private static String getKey(@NonNull File image, int sizePx) {
+        return image.getAbsolutePath() + ":" + image.lastModified() + ":" + sizePx;
+    }
+
+    // ------------------------------------
+    // Decoding, runs on a background thread
+    // ------------------------------------
+
+    @Nullable
+    private Bitmap loadThumbnail(@NonNull File image, int sizePx) {
+        File thumbnailFile = new File(thumbnailDir, image.getName() + "." + sizePx + ".jpg");
+        if (thumbnailFile.lastModified() >= image.lastModified()) {
+            Bitmap thumbnail = BitmapFactory.decodeFile(thumbnailFile.getPath());
+            if (thumbnail != null) return thumbnail;
+        }
+
+        Bitmap thumbnail = decodeThumbnail(image, sizePx);
+        if (thumbnail != null) saveThumbnail(thumbnail, thumbnailFile);
+        return thumbnail;
+    }
+
+    @Nullable
+    private static Bitmap decodeThumbnail(@NonNull File image, int sizePx) {
+        // read the dimensions only, to determine the subsampling
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(image.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, sizePx);
+        Bitmap sampled = BitmapFactory.decodeFile(image.getPath(), options);
+        if (sampled == null) return null;
+        // scale and crop the subsampled image to exactly the requested size
+        return ThumbnailUtils.extractThumbnail(sampled, sizePx, sizePx, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+    }
+
+    /**
+     * @return the largest power of two by which an image of width x height can be subsampled
+     * while its shorter side still covers sizePx (the image is center-cropped to a square)
+     */
+    @VisibleForTesting
+    public static int calculateInSampleSize(int width, int height, int sizePx) {
+        int inSampleSize = 1;
+        int shorterSide = Math.min(width, height);
+        while (shorterSide / (inSampleSize * 2) >= sizePx) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private void saveThumbnail(@NonNull Bitmap thumbnail, @NonNull File thumbnailFile) {
+        if (!thumbnailDir.isDirectory() && !thumbnailDir.mkdirs()) return;
+        // write to a temporary file first, so concurrent readers never see a partial thumbnail
+        File tmpFile = new File(thumbnailDir, thumbnailFile.getName() + ".tmp" + Thread.currentThread().getId());
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not save thumbnail " + thumbnailFile + ": " + e.getMessage());
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(thumbnailFile)) tmpFile.delete();
+    }
+}
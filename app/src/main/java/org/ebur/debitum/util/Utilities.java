@@ -19,7 +19,9 @@ import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -35,6 +37,15 @@ public abstract class Utilities {
 
     @Nullable
     public static String formatDate(@Nullable Date date, @NonNull Context context) {
+        return formatDate(date, getDateFormat(context));
+    }
+
+    /**
+     * @return a new DateFormat for the date format set in the preferences. DateFormats are not
+     * thread-safe, so the returned instance must not be shared between threads.
+     */
+    @NonNull
+    public static DateFormat getDateFormat(@NonNull Context context) {
         SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(context);
         String dateFormat = pref.getString(SettingsFragment.PREF_KEY_DATE_FORMAT, DATE_FORMAT);
         String dateFormatSystemDefaultS = context.getResources()
@@ -46,14 +57,14 @@ public abstract class Utilities {
 
         if (dateFormat.equals(dateFormatSystemDefaultS)) {
             // format with system default short value
-            return formatDate(date, java.text.DateFormat.getDateInstance(DateFormat.SHORT));
+            return java.text.DateFormat.getDateInstance(DateFormat.SHORT);
         } else if (dateFormat.equals(dateFormatSystemDefaultM)) {
-            return formatDate(date, java.text.DateFormat.getDateInstance(DateFormat.MEDIUM));
+            return java.text.DateFormat.getDateInstance(DateFormat.MEDIUM);
         } else if (dateFormat.equals(dateFormatSystemDefaultL)) {
-            return formatDate(date, java.text.DateFormat.getDateInstance(DateFormat.LONG));
+            return java.text.DateFormat.getDateInstance(DateFormat.LONG);
         } else {
             // format with value from preference
-            return formatDate(date, dateFormat);
+            return new SimpleDateFormat(dateFormat, Locale.getDefault());
         }
     }
     @Nullable
@@ -83,6 +94,23 @@ public abstract class Utilities {
                 .intValue();
     }
 
+    /**
+     * Splits a list into consecutive sublists (views, not copies) of the given size, the last one
+     * possibly being smaller. Used to keep the number of bound parameters of sqlite queries with
+     * "in (:list)" below sqlite's limit.
+     * @param list list to be split
+     * @param size maximum size of each part, must be > 0
+     */
+    @NonNull
+    public static <T> List<List<T>> partition(@NonNull List<T> list, int size) {
+        if (size <= 0) throw new IllegalArgumentException("size must be > 0, but is " + size);
+        List<List<T>> parts = new ArrayList<>((list.size() + size - 1) / size);
+        for (int start = 0; start < list.size(); start += size) {
+            parts.add(list.subList(start, Math.min(start + size, list.size())));
+        }
+        return parts;
+    }
+
     public static void setVisibilityAnimated(View view, int visibility) {
         float alpha, translationY;
         int duration = 100;
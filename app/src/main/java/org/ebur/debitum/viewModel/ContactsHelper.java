@@ -2,6 +2,8 @@ package org.ebur.debitum.viewModel;
 
 import android.Manifest;
 import android.app.Application;
+import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.graphics.Bitmap;
@@ -9,10 +11,16 @@ import android.graphics.BitmapFactory;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.ContactsContract;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.annotation.ColorInt;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
@@ -24,128 +32,479 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
 import org.ebur.debitum.R;
+import org.ebur.debitum.util.ImageStore;
+import org.ebur.debitum.util.Utilities;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ContactsHelper extends AndroidViewModel {
 
-    @SuppressWarnings("unused")
-    private final String TAG = "ContactsHelper";
+    private static final String TAG = "ContactsHelper";
 
-    @NonNull private final HashMap<Uri, Contact> contactCache;
+    // contacts (including their photo) are cached in memory, limited by their byte count
+    private static final int CACHE_SIZE_DIVISOR = 32;
+    // per contact without photo, roughly
+    private static final int CONTACT_BASE_SIZE = 128;
+
+    // the contacts provider accepts at most 999 arguments per query
+    private static final int MAX_QUERY_ARGUMENTS = 999;
+    private static final String CONTACT_INFOS_FILENAME = "contacts.properties";
+    private static final String AVATAR_SUBDIR = "contact-avatars";
+    private static final String[] INFO_PROJECTION = new String[] {
+            ContactsContract.Contacts.DISPLAY_NAME,
+            ContactsContract.Contacts.PHOTO_THUMBNAIL_URI,
+            ContactsContract.Contacts.PHOTO_ID};
+
+    @NonNull private final LruCache<Uri, Contact> contactCache;
+    // name and photo version of all contacts seen so far, guarded by itself
+    @NonNull private final Map<Uri, ContactInfo> contactInfos = new HashMap<>();
+    private boolean contactInfosLoaded = false;
+    // contacts resolved in this session, only accessed on the main thread
+    @NonNull private final Set<Uri> resolvedUris = new HashSet<>();
+    @NonNull private final MutableLiveData<Integer> contactsVersion = new MutableLiveData<>(0);
+    // an increase of contactsVersion is posted already, only accessed on the main thread
+    private boolean contactsChangePosted = false;
     @NonNull private final MutableLiveData<Boolean> contactLinkingEnabled;
+    // contacts are loaded one after another in the background, results are delivered on the main
+    // thread
+    private final ExecutorService contactLoader = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // listeners waiting for a contact that is being loaded, only accessed on the main thread
+    private final Map<Uri, List<OnContactLoadedListener>> pendingLoads = new HashMap<>();
 
     public static class Contact {
+        // empty if the contact does not exist (anymore)
         @NonNull String name;
         @Nullable Bitmap photo;
+        // changes whenever the contact's photo changes
+        long photoVersion;
 
-        Contact(@NonNull String name, @Nullable Bitmap photo) {
+        Contact(@NonNull String name, @Nullable Bitmap photo, long photoVersion) {
             this.name = name;
             this.photo = photo;
+            this.photoVersion = photoVersion;
+        }
+
+        @Nullable
+        public Bitmap getPhoto() {
+            return photo;
+        }
+
+        public long getPhotoVersion() {
+            return photoVersion;
+        }
+
+        int getByteCount() {
+            return CONTACT_BASE_SIZE + 2 * name.length() + (photo != null ? photo.getAllocationByteCount() : 0);
+        }
+    }
+
+    static class ContactInfo {
+        static final ContactInfo MISSING = new ContactInfo("", null, 0);
+
+        // empty if the contact does not exist (anymore)
+        @NonNull final String name;
+        @Nullable final String photoUri;
+        // changes whenever the photo changes
+        final long photoId;
+
+        ContactInfo(@NonNull String name, @Nullable String photoUri, long photoId) {
+            this.name = name;
+            this.photoUri = photoUri;
+            this.photoId = photoId;
+        }
+
+        // photo id, photo uri and name separated by tabs, the name last as it may contain tabs
+        @NonNull
+        String format() {
+            return photoId + "\t" + (photoUri != null ? photoUri : "") + "\t" + name;
+        }
+
+        @Nullable
+        static ContactInfo parse(@NonNull String s) {
+            String[] parts = s.split("\t", 3);
+            if (parts.length < 3) return null;
+            try {
+                return new ContactInfo(parts[2], parts[1].isEmpty() ? null : parts[1], Long.parseLong(parts[0]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ContactInfo)) return false;
+            ContactInfo other = (ContactInfo) o;
+            return name.equals(other.name) && Objects.equals(photoUri, other.photoUri) && photoId == other.photoId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, photoUri, photoId);
         }
     }
 
+    public interface OnContactLoadedListener {
+        /**
+         * Called on the main thread
+         * @param contact the loaded contact, null if it does not exist (anymore)
+         */
+        void onContactLoaded(@NonNull Uri uri, @Nullable Contact contact);
+    }
+
     public ContactsHelper(Application application) {
         super(application);
-        contactCache = new HashMap<>();
+        int cacheSize = (int) Math.min(Runtime.getRuntime().maxMemory() / CACHE_SIZE_DIVISOR, Integer.MAX_VALUE);
+        contactCache = new LruCache<Uri, Contact>(cacheSize) {
+            @Override
+            protected int sizeOf(Uri uri, Contact contact) {
+                return contact.getByteCount();
+            }
+        };
         contactLinkingEnabled = new MutableLiveData<>(false);
     }
 
-    private void cacheContactInfo(@NonNull Uri uri, @NonNull Contact contact) {
-        contactCache.put(uri, contact);
+    @Override
+    protected void onCleared() {
+        contactLoader.shutdownNow();
+        super.onCleared();
     }
 
-    private boolean isCached(@Nullable Uri uri) {
-        if (uri == null) {
-            return false;
-        } else {
-            return contactCache.containsKey(uri);
+    /**
+     * @return the contact at uri if it is cached, else null
+     */
+    @Nullable
+    public Contact getCachedContact(@Nullable Uri uri) {
+        return uri == null ? null : contactCache.get(uri);
+    }
+
+    /**
+     * Loads the contact at uri in the background (unless it is cached already) and passes it to
+     * listener on the main thread. Loading the same contact several times at once queries it only
+     * once.
+     */
+    @MainThread
+    public void loadContact(@NonNull Uri uri, @NonNull OnContactLoadedListener listener) {
+        Contact cached = contactCache.get(uri);
+        if (cached != null) {
+            listener.onContactLoaded(uri, exists(cached) ? cached : null);
+            return;
+        }
+        List<OnContactLoadedListener> listeners = pendingLoads.get(uri);
+        if (listeners != null) {
+            listeners.add(listener);
+            return;
         }
+        listeners = new ArrayList<>();
+        listeners.add(listener);
+        pendingLoads.put(uri, listeners);
+        contactLoader.execute(() -> {
+            Contact contact = getContact(uri);
+            mainHandler.post(() -> {
+                List<OnContactLoadedListener> waiting = pendingLoads.remove(uri);
+                if (waiting == null) return;
+                for (OnContactLoadedListener waitingListener : waiting) {
+                    waitingListener.onContactLoaded(uri, exists(contact) ? contact : null);
+                }
+            });
+        });
     }
 
-    @Nullable
-    private Bitmap getContactImageFromCache(@NonNull Uri uri) {
+    private static boolean exists(@NonNull Contact contact) {
+        return !contact.name.isEmpty();
+    }
+
+    // returns the contact from the cache or else queries and caches it
+    @NonNull
+    private Contact getContact(@NonNull Uri uri) {
         Contact contact = contactCache.get(uri);
-        return contact != null ? contact.photo : null;
+        if (contact == null) {
+            contact = getContactFromContentProvider(uri);
+            contactCache.put(uri, contact);
+        }
+        return contact;
     }
 
-    @Nullable
-    private Bitmap getContactImageFromContentProvider(@NonNull Uri uri) {
-        Uri photoUri = Uri.withAppendedPath(uri, ContactsContract.Contacts.Photo.CONTENT_DIRECTORY);
-        String[] photoProjection = new String[] {ContactsContract.Contacts.Photo.PHOTO};
-        Bitmap photo;
-        Cursor cursor = getApplication().getContentResolver()
-                .query(photoUri, photoProjection, null, null, null);
-        if (cursor == null) {
-            return null;
+    @NonNull
+    private Contact getContactFromContentProvider(@NonNull Uri uri) {
+        ContactInfo info = getContactInfo(uri);
+        if (info.name.isEmpty()) return new Contact("", null, 0);
+        return new Contact(info.name, info.photoUri != null ? getPhoto(uri, info) : null, info.photoId);
+    }
+
+    // ------------------------------------
+    // Contact infos (name and photo version), resolved in bulk and persisted
+    // ------------------------------------
+
+    /**
+     * Resolves name and photo version of the contacts at uris in the background, with a few bulk
+     * queries instead of one query per contact. Each contact is resolved once per session, the
+     * results are persisted. Contacts whose name or photo changed since they were cached are
+     * evicted, which is signalled via getContactsVersion.
+     */
+    @MainThread
+    public void resolveContacts(@NonNull Collection<Uri> uris) {
+        List<Uri> unresolved = new ArrayList<>();
+        for (Uri uri : uris) {
+            if (resolvedUris.add(uri)) unresolved.add(uri);
         }
-        try {
-            if (cursor.moveToFirst()) {
-                byte[] data = cursor.getBlob(0);
-                if (data != null) {
-                    photo = BitmapFactory.decodeStream(new ByteArrayInputStream(data));
-                    int size = getApplication().getResources().getInteger(R.integer.avatar_size);
-                    return Bitmap.createScaledBitmap(photo, size, size, true);
+        if (unresolved.isEmpty()) return;
+        contactLoader.execute(() -> {
+            if (resolve(unresolved)) {
+                mainHandler.post(this::notifyContactsChanged);
+            }
+        });
+    }
+
+    /**
+     * Increases getContactsVersion. Calls in quick succession (e.g. for several contacts loaded
+     * one after another) lead to a single increase.
+     */
+    @MainThread
+    public void notifyContactsChanged() {
+        if (contactsChangePosted) return;
+        contactsChangePosted = true;
+        mainHandler.post(() -> {
+            contactsChangePosted = false;
+            contactsVersion.setValue(contactsVersion.getValue() + 1);
+        });
+    }
+
+    /**
+     * @return a counter that is increased whenever cached contacts changed
+     */
+    @NonNull public LiveData<Integer> getContactsVersion() {
+        return contactsVersion;
+    }
+
+    // returns true if any of the already known contacts changed
+    private boolean resolve(@NonNull List<Uri> uris) {
+        ContentResolver resolver = getApplication().getContentResolver();
+        // contact uris end with the contact's id (also lookup uris), query them by id in bulk
+        Map<Long, Uri> urisById = new HashMap<>();
+        List<Uri> remaining = new ArrayList<>();
+        for (Uri uri : uris) {
+            long id = parseContactId(uri);
+            if (id < 0 || urisById.containsKey(id)) remaining.add(uri);
+            else urisById.put(id, uri);
+        }
+
+        boolean changed = false;
+        Set<Uri> found = new HashSet<>();
+        String[] projection = new String[INFO_PROJECTION.length + 1];
+        System.arraycopy(INFO_PROJECTION, 0, projection, 0, INFO_PROJECTION.length);
+        projection[INFO_PROJECTION.length] = ContactsContract.Contacts._ID;
+        for (List<Long> ids : Utilities.partition(new ArrayList<>(urisById.keySet()), MAX_QUERY_ARGUMENTS)) {
+            String[] args = new String[ids.size()];
+            for (int i = 0; i < args.length; i++) args[i] = String.valueOf(ids.get(i));
+            String selection = ContactsContract.Contacts._ID + " IN ("
+                    + TextUtils.join(",", Collections.nCopies(args.length, "?")) + ")";
+            try (Cursor cursor = resolver.query(ContactsContract.Contacts.CONTENT_URI, projection, selection, args, null)) {
+                while (cursor != null && cursor.moveToNext()) {
+                    Uri uri = urisById.get(cursor.getLong(INFO_PROJECTION.length));
+                    if (uri == null) continue;
+                    found.add(uri);
+                    changed |= updateContactInfo(uri, toContactInfo(cursor));
                 }
             }
-        } finally {
-            cursor.close();
         }
-        return null;
+        // the ids of contacts might have changed (e.g. when they were joined), lookup uris still
+        // find them
+        for (Uri uri : urisById.values()) {
+            if (!found.contains(uri)) remaining.add(uri);
+        }
+        for (Uri uri : remaining) {
+            changed |= updateContactInfo(uri, queryContactInfo(uri));
+        }
+        persistContactInfos();
+        return changed;
     }
 
-    @Nullable
-    public Bitmap getContactImage(@Nullable Uri uri) {
-        if (uri == null) return null;
-        if (isCached(uri)) {
-            return getContactImageFromCache(uri);
-        } else {
-            // cache contact and return its photo
-            Bitmap photo = getContactImageFromContentProvider(uri);
-            String name = getContactNameFromContentProvider(uri);
-            if (name != null) {
-                cacheContactInfo(uri, new Contact(name, photo));
+    // returns true if the contact was known and has changed
+    private boolean updateContactInfo(@NonNull Uri uri, @NonNull ContactInfo info) {
+        ContactInfo old;
+        synchronized (contactInfos) {
+            ensureContactInfosLoaded();
+            old = contactInfos.put(uri, info);
+        }
+        if (old == null || old.equals(info)) return false;
+        contactCache.remove(uri);
+        getAvatarFile(uri, old).delete();
+        return true;
+    }
+
+    private static long parseContactId(@NonNull Uri uri) {
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    @NonNull
+    private ContactInfo getContactInfo(@NonNull Uri uri) {
+        ContactInfo info;
+        synchronized (contactInfos) {
+            ensureContactInfosLoaded();
+            info = contactInfos.get(uri);
+        }
+        if (info == null) {
+            info = queryContactInfo(uri);
+            synchronized (contactInfos) {
+                contactInfos.put(uri, info);
             }
-            return photo;
+            persistContactInfos();
+        }
+        return info;
+    }
+
+    @NonNull
+    private ContactInfo queryContactInfo(@NonNull Uri uri) {
+        try (Cursor cursor = getApplication().getContentResolver()
+                .query(uri, INFO_PROJECTION, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return toContactInfo(cursor);
+            }
+        }
+        return ContactInfo.MISSING;
+    }
+
+    // reads the columns of INFO_PROJECTION
+    @NonNull
+    private static ContactInfo toContactInfo(@NonNull Cursor cursor) {
+        String name = cursor.getString(0);
+        if (name == null) return ContactInfo.MISSING;
+        return new ContactInfo(name, cursor.getString(1), cursor.isNull(2) ? 0 : cursor.getLong(2));
+    }
+
+    // must be called while holding contactInfos
+    private void ensureContactInfosLoaded() {
+        if (contactInfosLoaded) return;
+        contactInfosLoaded = true;
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(getContactInfosFile())) {
+            properties.load(in);
+        } catch (IOException e) {
+            // not persisted yet
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            ContactInfo info = ContactInfo.parse(properties.getProperty(key));
+            if (info != null) contactInfos.put(Uri.parse(key), info);
         }
     }
 
+    private void persistContactInfos() {
+        Properties properties = new Properties();
+        synchronized (contactInfos) {
+            for (Map.Entry<Uri, ContactInfo> entry : contactInfos.entrySet()) {
+                properties.setProperty(entry.getKey().toString(), entry.getValue().format());
+            }
+        }
+        File file = getContactInfosFile();
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            properties.store(out, null);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not persist contacts: " + e.getMessage());
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) tmpFile.delete();
+    }
+
+    @NonNull
+    private File getContactInfosFile() {
+        return new File(getApplication().getCacheDir(), CONTACT_INFOS_FILENAME);
+    }
+
+    // ------------------------------------
+    // Photos, cached on disk per photo version
+    // ------------------------------------
+
     @Nullable
-    private String getContactNameFromCache(@NonNull Uri uri) {
-        Contact contact = contactCache.get(uri);
-        return contact != null ? contact.name : null;
+    private Bitmap getPhoto(@NonNull Uri uri, @NonNull ContactInfo info) {
+        File avatarFile = getAvatarFile(uri, info);
+        Bitmap photo = BitmapFactory.decodeFile(avatarFile.getPath());
+        if (photo != null) return photo;
+
+        photo = decodePhoto(Uri.parse(info.photoUri));
+        if (photo != null) saveAvatar(photo, avatarFile);
+        return photo;
     }
 
     @Nullable
-    private String getContactNameFromContentProvider(@NonNull Uri uri) {
-        @NonNull String name;
-        int index;
-        try (Cursor cursor = getApplication().getContentResolver()
-                .query(uri, null, null, null, null)) {
-            if (cursor.moveToFirst()) {
-                index = cursor.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME);
-                name = cursor.getString(index);
-                return name;
-            }
+    private Bitmap decodePhoto(@NonNull Uri photoUri) {
+        try (InputStream in = getApplication().getContentResolver().openInputStream(photoUri)) {
+            if (in == null) return null;
+            Bitmap photo = BitmapFactory.decodeStream(in);
+            if (photo == null) return null;
+            int size = getApplication().getResources().getInteger(R.integer.avatar_size);
+            Bitmap scaled = Bitmap.createScaledBitmap(photo, size, size, true);
+            if (scaled != photo) photo.recycle();
+            return scaled;
+        } catch (IOException e) {
+            return null;
         }
-        return null;
     }
 
+    @NonNull
+    private File getAvatarFile(@NonNull Uri uri, @NonNull ContactInfo info) {
+        MessageDigest digest = ImageStore.newDigest();
+        String key = ImageStore.toHex(digest.digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+        return new File(new File(getApplication().getCacheDir(), AVATAR_SUBDIR), key + "-" + info.photoId + ".png");
+    }
+
+    private void saveAvatar(@NonNull Bitmap photo, @NonNull File avatarFile) {
+        File dir = avatarFile.getParentFile();
+        if (dir == null || !dir.isDirectory() && !dir.mkdirs()) return;
+        File tmpFile = new File(dir, avatarFile.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpFile)) {
+            photo.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(avatarFile)) tmpFile.delete();
+    }
+
+    /**
+     * Synchronous variant of loadContact, for single contacts
+     */
+    @Nullable
+    public Bitmap getContactImage(@Nullable Uri uri) {
+        if (uri == null) return null;
+        return getContact(uri).photo;
+    }
+
+    /**
+     * Synchronous variant of loadContact, for single contacts
+     * @return the contact's name, null if it does not exist (anymore) or has no name
+     */
     @Nullable
     public String getContactName(@Nullable Uri uri) {
         if (uri == null) return null;
-        if (isCached(uri)) {
-            return getContactNameFromCache(uri);
-        } else {
-            // cache contact and return its name
-            Bitmap photo = getContactImageFromContentProvider(uri);
-            String name = getContactNameFromContentProvider(uri);
-            if (name != null) {
-                cacheContactInfo(uri, new Contact(name, photo));
-            }
-            return name == null || name.isEmpty() ? null : name;
-        }
+        String name = getContact(uri).name;
+        return name.isEmpty() ? null : name;
     }
 
     /**
@@ -1,25 +1,34 @@
 package org.ebur.debitum.viewModel;
 
 import android.app.Application;
+import android.net.Uri;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.preference.PreferenceManager;
 
+import org.ebur.debitum.database.ImageGarbageCollector;
 import org.ebur.debitum.database.ImageRepository;
 import org.ebur.debitum.database.Person;
 import org.ebur.debitum.database.PersonRepository;
 import org.ebur.debitum.database.Transaction;
 import org.ebur.debitum.database.TransactionRepository;
 import org.ebur.debitum.database.TransactionWithPerson;
+import org.ebur.debitum.util.ImageIngester;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class EditTransactionViewModel extends AndroidViewModel {
 
@@ -33,6 +42,11 @@ public class EditTransactionViewModel extends AndroidViewModel {
     private Date returnTimestamp;
     private final MutableLiveData<List<String>> imageFilenames;
 
+    // images are imported one after another, off the main thread
+    private static final ExecutorService imageImportExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<ImageImport> imageImport = new MutableLiveData<>(null);
+    // pinned in ImageGarbageCollector until the dialog is closed, only accessed on the main thread
+    private final List<String> importedImages = new ArrayList<>();
 
     public EditTransactionViewModel(Application application) {
         super(application);
@@ -86,9 +100,68 @@ public class EditTransactionViewModel extends AndroidViewModel {
             imageFilenames.setValue(new ArrayList<>());
         }
     }
-    public boolean hasImages() {
-        return imageFilenames.getValue() != null && !imageFilenames.getValue().isEmpty();
+    public static class ImageImport {
+        public static final int RUNNING = 0;
+        public static final int SUCCEEDED = 1;
+        public static final int FAILED = 2;
+
+        public final int state;
+        public final int percent;
+        @Nullable public final String message;
+
+        ImageImport(int state, int percent, @Nullable String message) {
+            this.state = state;
+            this.percent = percent;
+            this.message = message;
+        }
+    }
+
+    /**
+     * @return state of the currently running or last finished image import, null if there is
+     * none or its result was already consumed (see clearImageImport)
+     */
+    @NonNull
+    public LiveData<ImageImport> getImageImport() { return imageImport; }
+    public void clearImageImport() { imageImport.setValue(null); }
+
+    /**
+     * Imports the image at uri into imageDir on a background thread, processed according to the
+     * settings (see ImageIngester), and links it to the transaction once it is imported.
+     */
+    public void importImage(@NonNull Uri uri, @NonNull File imageDir) {
+        Application app = getApplication();
+        Executor mainExecutor = ContextCompat.getMainExecutor(app);
+        ImageIngester ingester = new ImageIngester(app.getContentResolver(),
+                ImageIngester.Options.fromPreferences(PreferenceManager.getDefaultSharedPreferences(app)));
+        ImageGarbageCollector garbageCollector = ImageGarbageCollector.getInstance(app);
+        imageImport.setValue(new ImageImport(ImageImport.RUNNING, 0, null));
+        imageImportExecutor.execute(() -> {
+            final int[] lastPercent = {0};
+            try {
+                // the image must not be deleted as orphan before the transaction is saved, so it
+                // is pinned before it is moved into imageDir
+                File image = ingester.ingest(uri, imageDir, garbageCollector, (bytesDone, bytesTotal) -> {
+                    int percent = (int) (100 * bytesDone / bytesTotal);
+                    if (percent != lastPercent[0]) {
+                        lastPercent[0] = percent;
+                        imageImport.postValue(new ImageImport(ImageImport.RUNNING, percent, null));
+                    }
+                });
+                // results are set on the main thread, as postValue would drop all but the last
+                // of several results
+                mainExecutor.execute(() -> {
+                    importedImages.add(image.getName());
+                    addImageLink(image.getName());
+                    imageImport.setValue(new ImageImport(ImageImport.SUCCEEDED, 100, null));
+                });
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                mainExecutor.execute(() ->
+                        imageImport.setValue(new ImageImport(ImageImport.FAILED, 0, e.getMessage())));
+            }
+        });
     }
+
     public void addImageLink(@NonNull String filename) {
         List<String> images = imageFilenames.getValue();
         if (images == null) {
@@ -106,37 +179,40 @@ public class EditTransactionViewModel extends AndroidViewModel {
         }
     }
 
-    public void deleteOrphanedImageFiles(File imageBasedir) {
-        List<String> filenamesDb = imageRepository.getAllImageFilenames();
-        String[] filenamesDir = imageBasedir.list();
-        assert filenamesDir != null;
-        for (String filenameDir:filenamesDir) {
-            if (!filenamesDb.contains(filenameDir)) {
-                File orphanedImageFile = new File(imageBasedir, filenameDir);
-                orphanedImageFile.delete();
-            }
-        }
-    }
-
-    public void deleteBrokenImageLinks(File imageBasedir) {
-        File[] files = imageBasedir.listFiles();
-        // files would be null, if this imageBasedir does not denote a directory, or if an I/O error
-        // occurs. In this case deleting image links is skipped. Thus some possibly broken image
-        // links stay in the database, which is a purely internal nuisance.
-        if (files != null) {
-            imageRepository.deleteBrokenImageLinks(Arrays.asList(files));
-        }
+    /**
+     * Releases the images imported in this dialog and has the images that are not linked to any
+     * transaction deleted in the background, see ImageGarbageCollector
+     */
+    public void collectImageGarbage(File imageBasedir) {
+        ImageGarbageCollector garbageCollector = ImageGarbageCollector.getInstance(getApplication());
+        garbageCollector.unpin(importedImages);
+        importedImages.clear();
+        garbageCollector.schedule(imageBasedir);
     }
 
     public void synchronizeDbWithViewModel(File imageBasedir) {
         synchronizeDbWithViewModel(imageBasedir, transaction.transaction.idTransaction);
     }
     public void synchronizeDbWithViewModel(File imageBasedir, int idTransaction) {
-        // update the transaction's image links
-        imageRepository.update(idTransaction, imageFilenames.getValue());
-        // then remove all images from the filesystem, that are not linked to any transaction
-        deleteOrphanedImageFiles(imageBasedir);
-        // remove all image links from the db that have no matching image file
-        deleteBrokenImageLinks(imageBasedir);
+        List<String> filenames = imageFilenames.getValue();
+        ImageGarbageCollector garbageCollector = ImageGarbageCollector.getInstance(getApplication());
+        List<String> imported = new ArrayList<>(importedImages);
+        importedImages.clear();
+        // update the transaction's image links in the background
+        imageRepository.update(idTransaction,
+                filenames == null ? null : new ArrayList<>(filenames),
+                success -> {
+                    // then remove all images from the filesystem, that are not linked to any
+                    // transaction, and all image links from the db that have no matching image file
+                    garbageCollector.unpin(imported);
+                    garbageCollector.schedule(imageBasedir);
+                });
+    }
+
+    @Override
+    protected void onCleared() {
+        // imported images that were neither saved nor dismissed explicitly
+        ImageGarbageCollector.getInstance(getApplication()).unpin(importedImages);
+        super.onCleared();
     }
 }
\ No newline at end of file
@@ -24,7 +24,7 @@ public class ListOrderViewModel extends AndroidViewModel {
         order = new MutableLiveData<>(ORDER_DATE & ORDER_DESC);
     }
 
-    // TODO another possibility would be to pass the order-by SQL part to txnRepository.getAllPersonsWithTransactions()
+    // TODO another possibility would be to pass the order-by SQL part to txnRepository.getAllPersonSummaries()
     //  and re-call this method in setOrder()
     public void setOrder(int by, boolean asc) {
         int direction = asc?ORDER_ASC:ORDER_DESC;
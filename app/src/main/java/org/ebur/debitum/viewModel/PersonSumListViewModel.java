@@ -7,7 +7,7 @@ import androidx.lifecycle.LiveData;
 
 import org.ebur.debitum.database.Person;
 import org.ebur.debitum.database.PersonRepository;
-import org.ebur.debitum.database.PersonWithTransactions;
+import org.ebur.debitum.database.PersonSummary;
 import org.ebur.debitum.database.Transaction;
 import org.ebur.debitum.database.TransactionRepository;
 
@@ -19,16 +19,16 @@ public class PersonSumListViewModel extends AndroidViewModel {
     private final TransactionRepository txnRepository;
     private final PersonRepository personRepository;
 
-    private final LiveData<List<PersonWithTransactions>> personsWithTransactions;
+    private final LiveData<List<PersonSummary>> personSummaries;
 
     public PersonSumListViewModel(Application application) {
         super(application);
         txnRepository = new TransactionRepository(application);
         personRepository = new PersonRepository(application);
-        personsWithTransactions = txnRepository.getAllPersonsWithTransactions();
+        personSummaries = txnRepository.getAllPersonSummaries();
     }
 
-    public LiveData<List<PersonWithTransactions>> getPersonsWithTransactions() { return personsWithTransactions; }
+    public LiveData<List<PersonSummary>> getPersonSummaries() { return personSummaries; }
 
     public Person getPersonById(int idPerson) throws ExecutionException, InterruptedException {
         return personRepository.getPersonById(idPerson);
@@ -39,4 +39,7 @@ public class PersonSumListViewModel extends AndroidViewModel {
     public void delete(Person person) {
         personRepository.delete(person);
     }
+    public void delete(List<Integer> idPersons) {
+        personRepository.deleteByIds(idPersons);
+    }
 }
\ No newline at end of file
@@ -1,15 +1,62 @@
 package org.ebur.debitum.viewModel;
 
 import android.app.Application;
+import android.content.ContentResolver;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.preference.PreferenceManager;
 
+import org.ebur.debitum.R;
+import org.ebur.debitum.database.AppDatabase;
+import org.ebur.debitum.database.ImageGarbageCollector;
 import org.ebur.debitum.database.TransactionRepository;
+import org.ebur.debitum.ui.SettingsFragment;
+import org.ebur.debitum.util.BackupManifest;
+import org.ebur.debitum.util.BackupReader;
+import org.ebur.debitum.util.BackupValidator;
+import org.ebur.debitum.util.BackupWriter;
+import org.ebur.debitum.util.InvalidBackupException;
+import org.ebur.debitum.util.FileUtils;
+import org.ebur.debitum.util.ImageStore;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class SettingsViewModel extends AndroidViewModel {
 
+    private static final String TAG = "SettingsViewModel";
+
     private final TransactionRepository transactionRepository;
 
+    // backups are written (and restored) one after another, off the main thread
+    private static final ExecutorService backupExecutor = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<BackupProgress> backupProgress = new MutableLiveData<>(null);
+    private final MutableLiveData<BackupProgress> restoreProgress = new MutableLiveData<>(null);
+    @Nullable private volatile BackupWriter backupWriter;
+    // set by cancelBackup, also while the database snapshot is taken (before there is a writer)
+    private volatile boolean backupCancelRequested;
+    @Nullable private volatile BackupReader restoreReader;
+
     public SettingsViewModel(Application application) {
         super(application);
         transactionRepository = new TransactionRepository(application);
@@ -18,4 +65,426 @@ public class SettingsViewModel extends AndroidViewModel {
     public void changeTransactionDecimals(int shift) {
         transactionRepository.changeTransactionDecimals(shift);
     }
-}
\ No newline at end of file
+
+    // ------
+    // Backup
+    // ------
+
+    // progress of a backup or a restore
+    public static class BackupProgress {
+        public static final int RUNNING = 0;
+        public static final int SUCCEEDED = 1;
+        public static final int FAILED = 2;
+        public static final int CANCELLED = 3;
+
+        public final int state;
+        public final int percent;
+        // error message if FAILED, warning (if any) if SUCCEEDED
+        @Nullable public final String message;
+
+        BackupProgress(int state, int percent, @Nullable String message) {
+            this.state = state;
+            this.percent = percent;
+            this.message = message;
+        }
+
+        public boolean isFinished() {
+            return state != RUNNING;
+        }
+    }
+
+    /**
+     * @return progress of the currently running or last finished backup, null if there is none
+     * or its result was already consumed (see clearBackupProgress)
+     */
+    @NonNull
+    public LiveData<BackupProgress> getBackupProgress() {
+        return backupProgress;
+    }
+
+    public void clearBackupProgress() {
+        backupProgress.setValue(null);
+    }
+
+    public boolean isBackupRunning() {
+        BackupProgress progress = backupProgress.getValue();
+        return progress != null && !progress.isFinished();
+    }
+
+    /**
+     * Writes a backup zip of the database, the preferences and all images in imageDir to destUri
+     * on a background thread. The progress is reported via getBackupProgress().
+     */
+    public void startBackup(@NonNull Uri destUri, @NonNull File imageDir) {
+        if (isBackupRunning()) return;
+        backupCancelRequested = false;
+        backupProgress.setValue(new BackupProgress(BackupProgress.RUNNING, 0, null));
+        backupExecutor.execute(() -> backup(destUri, imageDir));
+    }
+
+    public void cancelBackup() {
+        backupCancelRequested = true;
+        BackupWriter writer = backupWriter;
+        if (writer != null) writer.cancel();
+    }
+
+    private void backup(@NonNull Uri destUri, @NonNull File imageDir) {
+        ContentResolver resolver = getApplication().getContentResolver();
+        File snapshotDir = new File(getApplication().getCacheDir(), "backup");
+        File dbSnapshot = new File(snapshotDir, BackupWriter.ENTRY_DB);
+
+        // take a consistent snapshot of the database (the only intermediate copy being made)
+        final String[] snapshotMessage = {null};
+        AppDatabase.backupDatabase(BackupWriter.ENTRY_DB, snapshotDir.getAbsolutePath(),
+                (success, message) -> snapshotMessage[0] = success ? null : message);
+        if (snapshotMessage[0] != null) {
+            deleteDocument(resolver, destUri);
+            backupProgress.postValue(new BackupProgress(BackupProgress.FAILED, 0, snapshotMessage[0]));
+            return;
+        }
+        // cancelled while the snapshot was taken
+        if (backupCancelRequested) {
+            dbSnapshot.delete();
+            deleteDocument(resolver, destUri);
+            backupProgress.postValue(new BackupProgress(BackupProgress.CANCELLED, 0, null));
+            return;
+        }
+
+        List<File> images = new ArrayList<>();
+        File[] files = imageDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !ImageStore.isTemporary(file.getName())) images.add(file);
+            }
+        }
+
+        // incremental backups are based on the last backup made, if there is one
+        BackupManifest base = null;
+        if (PreferenceManager.getDefaultSharedPreferences(getApplication())
+                .getBoolean(SettingsFragment.PREF_KEY_INCREMENTAL_BACKUP, false)) {
+            base = readLastManifest();
+        }
+
+        BackupWriter writer = new BackupWriter(dbSnapshot, exportPreferences(), images, base);
+        backupWriter = writer;
+        // cancelBackup might have been called before the writer was published
+        if (backupCancelRequested) writer.cancel();
+        try (ParcelFileDescriptor pfd = openForWriting(resolver, destUri)) {
+            writer.write(new FileOutputStream(pfd.getFileDescriptor()), progressListener(backupProgress));
+            saveLastManifest(writer.getManifest());
+            backupProgress.postValue(new BackupProgress(BackupProgress.SUCCEEDED, 100, null));
+        } catch (CancellationException e) {
+            deleteDocument(resolver, destUri);
+            backupProgress.postValue(new BackupProgress(BackupProgress.CANCELLED, 0, null));
+        } catch (IOException e) {
+            e.printStackTrace();
+            deleteDocument(resolver, destUri);
+            backupProgress.postValue(new BackupProgress(BackupProgress.FAILED, 0, e.getMessage()));
+        } finally {
+            backupWriter = null;
+            dbSnapshot.delete();
+        }
+    }
+
+    // posts the progress to progressLiveData, but only when the displayed value changes
+    @NonNull
+    private static BackupWriter.ProgressListener progressListener(@NonNull MutableLiveData<BackupProgress> progressLiveData) {
+        final int[] lastPercent = {0};
+        return (bytesDone, bytesTotal) -> {
+            int percent = bytesTotal > 0 ? (int) (100 * bytesDone / bytesTotal) : 100;
+            if (percent != lastPercent[0]) {
+                lastPercent[0] = percent;
+                progressLiveData.postValue(new BackupProgress(BackupProgress.RUNNING, percent, null));
+            }
+        };
+    }
+
+    @NonNull
+    private static ParcelFileDescriptor openForWriting(@NonNull ContentResolver resolver, @NonNull Uri uri) throws FileNotFoundException {
+        // "wt" truncates an existing file
+        ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "wt");
+        if (pfd == null) throw new FileNotFoundException(uri.toString());
+        return pfd;
+    }
+
+    // remove an incomplete backup zip
+    private static void deleteDocument(@NonNull ContentResolver resolver, @NonNull Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(resolver, uri);
+        } catch (FileNotFoundException | RuntimeException e) {
+            Log.w(TAG, "Could not delete incomplete backup " + uri + ": " + e.getMessage());
+        }
+    }
+
+    // -------
+    // Restore
+    // -------
+
+    /**
+     * @return progress of the currently running or last finished restore, null if there is none
+     * or its result was already consumed (see clearRestoreProgress)
+     */
+    @NonNull
+    public LiveData<BackupProgress> getRestoreProgress() {
+        return restoreProgress;
+    }
+
+    public void clearRestoreProgress() {
+        restoreProgress.setValue(null);
+    }
+
+    public boolean isRestoreRunning() {
+        BackupProgress progress = restoreProgress.getValue();
+        return progress != null && !progress.isFinished();
+    }
+
+    /**
+     * Restores the database, preferences and images from the backup zip(s) at uris on a
+     * background thread, see BackupReader. The progress is reported via getRestoreProgress(), the
+     * app has to be restarted after success.
+     */
+    public void startRestore(@NonNull List<Uri> uris, @NonNull File imageDir) {
+        if (isRestoreRunning() || isBackupRunning()) return;
+        restoreProgress.setValue(new BackupProgress(BackupProgress.RUNNING, 0, null));
+        backupExecutor.execute(() -> restore(uris, imageDir));
+    }
+
+    /**
+     * Cancels a running restore, as long as it has not yet started replacing the app's data
+     */
+    public void cancelRestore() {
+        BackupReader reader = restoreReader;
+        if (reader != null) reader.cancel();
+    }
+
+    private void restore(@NonNull List<Uri> uris, @NonNull File imageDir) {
+        Application app = getApplication();
+        ContentResolver resolver = app.getContentResolver();
+        // the images are staged next to the image dir, so that they can be moved into place
+        BackupReader reader = new BackupReader(AppDatabase.getRestoreStagingFile(), new File(imageDir, "restore"));
+        // remains of an earlier restore that was interrupted
+        reader.cleanUp();
+        restoreReader = reader;
+        // the database and the images do not match while they are replaced
+        ImageGarbageCollector garbageCollector = ImageGarbageCollector.getInstance(app);
+        garbageCollector.suspend();
+        try {
+            List<BackupReader.Archive> archives = checkArchives(resolver, uris, imageDir);
+            reader.read(archives, progressListener(restoreProgress));
+            AppDatabase.checkRestoredDatabase(reader.getDatabaseFile());
+            // from here on the app's data is replaced, which must not be interrupted
+            restoreReader = null;
+
+            final String[] dbMessage = {null};
+            AppDatabase.replaceDatabase(reader.getDatabaseFile(),
+                    (success, message) -> dbMessage[0] = success ? null : message);
+            if (dbMessage[0] != null) {
+                restoreProgress.postValue(new BackupProgress(BackupProgress.FAILED, 0, dbMessage[0]));
+                return;
+            }
+
+            String warning = importPreferences(reader.getPreferencesFile());
+            // Note: there is no (urgent) need for cleaning the image directory before moving the
+            // restored files there, because any excess images will be deleted by the
+            // ImageGarbageCollector after the restart
+            int failedImages = reader.moveImages(imageDir);
+            if (failedImages > 0) {
+                warning = app.getString(R.string.restore_not_all_images_restored,
+                        app.getResources().getQuantityString(R.plurals.restore_images_not_moved, failedImages, failedImages));
+            }
+            // the restored data does not match the last backup, so the next one has to be a
+            // full backup
+            forgetLastBackup();
+            restoreProgress.postValue(new BackupProgress(BackupProgress.SUCCEEDED, 100, warning));
+        } catch (CancellationException e) {
+            restoreProgress.postValue(new BackupProgress(BackupProgress.CANCELLED, 0, null));
+        } catch (InvalidBackupException e) {
+            restoreProgress.postValue(new BackupProgress(BackupProgress.FAILED, 0, getInvalidBackupMessage(e)));
+        } catch (IOException e) {
+            e.printStackTrace();
+            restoreProgress.postValue(new BackupProgress(BackupProgress.FAILED, 0, e.getMessage()));
+        } finally {
+            restoreReader = null;
+            reader.cleanUp();
+            garbageCollector.resume();
+        }
+    }
+
+    /**
+     * Checks the central directories of the zips at uris and whether there is enough space for
+     * extracting them, before anything is extracted.
+     * @return the zips, to be read by BackupReader
+     */
+    @NonNull
+    private List<BackupReader.Archive> checkArchives(@NonNull ContentResolver resolver,
+                                                    @NonNull List<Uri> uris,
+                                                    @NonNull File imageDir) throws IOException {
+        List<BackupReader.Archive> archives = new ArrayList<>();
+        long dbSize = 0;
+        long imagesSize = 0;
+        for (Uri uri : uris) {
+            BackupValidator.ArchiveInfo info = null;
+            long length;
+            ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r");
+            if (pfd == null) throw new FileNotFoundException(uri.toString());
+            // closes pfd, too
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                length = pfd.getStatSize();
+                // some providers only offer a pipe, which cannot be read from its end
+                if (length >= 0) {
+                    info = BackupValidator.checkArchive(in.getChannel());
+                    for (BackupValidator.ArchiveEntry entry : info.entries) {
+                        if (entry.name.equals(BackupWriter.ENTRY_DB)) dbSize += entry.size;
+                        else imagesSize += entry.size;
+                    }
+                }
+            }
+
+            final BackupValidator.ArchiveInfo archiveInfo = info;
+            final long archiveLength = length;
+            archives.add(new BackupReader.Archive() {
+                @NonNull
+                @Override
+                public InputStream open() throws IOException {
+                    InputStream in = resolver.openInputStream(uri);
+                    if (in == null) throw new FileNotFoundException(uri.toString());
+                    return in;
+                }
+
+                @Override
+                public long length() {
+                    return archiveLength >= 0 ? archiveLength : FileUtils.getFileSize(uri, resolver);
+                }
+
+                @Nullable
+                @Override
+                public BackupValidator.ArchiveInfo getInfo() {
+                    return archiveInfo;
+                }
+            });
+        }
+
+        imageDir.mkdirs();
+        File dbDir = AppDatabase.getRestoreStagingFile().getParentFile();
+        if (imagesSize > imageDir.getUsableSpace()
+                || (dbDir != null && dbSize > dbDir.getUsableSpace())) {
+            throw new InvalidBackupException(InvalidBackupException.NOT_ENOUGH_SPACE,
+                    "Not enough space for extracting the backup");
+        }
+        return archives;
+    }
+
+    @NonNull
+    private String getInvalidBackupMessage(@NonNull InvalidBackupException e) {
+        switch (e.reason) {
+            case InvalidBackupException.NO_DATABASE:
+                return getApplication().getString(R.string.restore_failed_dbFileMissing);
+            case InvalidBackupException.NOT_A_DATABASE:
+                return getApplication().getString(R.string.restore_failed_not_a_database);
+            case InvalidBackupException.NO_MANIFEST:
+                return getApplication().getString(R.string.restore_failed_chain,
+                        getApplication().getString(R.string.restore_failed_chain_no_manifest));
+            case InvalidBackupException.CORRUPT_ARCHIVE:
+                return getApplication().getString(R.string.restore_failed_corrupt_archive, e.getMessage());
+            case InvalidBackupException.CORRUPT_DATABASE:
+                return getApplication().getString(R.string.restore_failed_corrupt_database, e.getMessage());
+            case InvalidBackupException.NEWER_VERSION:
+                return getApplication().getString(R.string.restore_failed_newer_version);
+            case InvalidBackupException.UNKNOWN_SCHEMA:
+                return getApplication().getString(R.string.restore_failed_unknown_schema);
+            case InvalidBackupException.NOT_ENOUGH_SPACE:
+                return getApplication().getString(R.string.restore_failed_not_enough_space);
+            case InvalidBackupException.INCOMPLETE_CHAIN:
+                return getApplication().getString(R.string.restore_failed_chain, e.getMessage());
+            default:
+                return String.valueOf(e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the app's preferences from a java properties file.
+     * @return a warning if the preferences could not be read, else null
+     */
+    @Nullable
+    private String importPreferences(@Nullable File prefsFile) {
+        Properties props = new Properties();
+        String warning = null;
+
+        if (prefsFile == null) {
+            // assume we are restoring from old backup without preferences. Then the amounts have
+            // 2 decimals (there was not setting for decimals when backups did not contain preferences)
+            // this prevents importing from old backups while having decimals set to something other
+            // than 2 and ending up with wrong amounts
+            props.put(SettingsFragment.PREF_KEY_DECIMALS, "2");
+        } else {
+            // get preferences from props xml
+            try (InputStream in = new FileInputStream(prefsFile)) {
+                props.loadFromXML(in);
+            } catch (IOException e) {
+                e.printStackTrace();
+                warning = getApplication().getString(R.string.restore_preferences_not_restored, e.getMessage());
+            }
+        }
+        // update app preferences from props
+        SharedPreferences.Editor editor = PreferenceManager
+                .getDefaultSharedPreferences(getApplication())
+                .edit();
+
+        for(Object keyObj:props.keySet()) {
+            String key = keyObj.toString();
+            String value = props.getProperty(key);
+            editor.putString(key, value);
+        }
+        // the app is restarted right afterwards
+        editor.commit();
+        return warning;
+    }
+
+    // ----------------------------------------------------------
+    // manifest of the last backup, base for incremental backups
+    // ----------------------------------------------------------
+
+    @NonNull
+    private File getLastManifestFile() {
+        return new File(getApplication().getFilesDir(), "last-backup-manifest.txt");
+    }
+
+    @Nullable
+    private BackupManifest readLastManifest() {
+        File file = getLastManifestFile();
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            return BackupManifest.read(in);
+        } catch (IOException e) {
+            // make a full backup instead
+            Log.w(TAG, "Could not read manifest of last backup: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveLastManifest(@NonNull BackupManifest manifest) {
+        try (OutputStream out = new FileOutputStream(getLastManifestFile())) {
+            manifest.write(out);
+        } catch (IOException e) {
+            // the next backup will be a full one, which is no problem
+            Log.w(TAG, "Could not save manifest of last backup: " + e.getMessage());
+            getLastManifestFile().delete();
+        }
+    }
+
+    /**
+     * Makes the next backup a full one. Needed e.g. after restoring, as the restored data does
+     * not correspond to the last backup made anymore.
+     */
+    public void forgetLastBackup() {
+        getLastManifestFile().delete();
+    }
+
+    // the app's preferences as java properties
+    @NonNull
+    private Properties exportPreferences() {
+        Properties props = new Properties();
+        props.putAll(PreferenceManager.getDefaultSharedPreferences(getApplication()).getAll());
+        return props;
+    }
+}
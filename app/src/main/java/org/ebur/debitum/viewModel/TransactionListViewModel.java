@@ -2,16 +2,27 @@ package org.ebur.debitum.viewModel;
 
 import android.app.Application;
 
+import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Transformations;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.InvalidatingPagingSourceFactory;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
 import org.ebur.debitum.database.Person;
 import org.ebur.debitum.database.PersonRepository;
 import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.database.TransactionFilter;
 import org.ebur.debitum.database.TransactionRepository;
+import org.ebur.debitum.database.TransactionTotal;
 import org.ebur.debitum.database.TransactionWithPerson;
 
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 
 public class TransactionListViewModel extends AndroidViewModel {
@@ -19,22 +30,46 @@ public class TransactionListViewModel extends AndroidViewModel {
     private final TransactionRepository txnRepository;
     private final PersonRepository personRepository;
 
-    private final LiveData<List<TransactionWithPerson>> moneyTransactions;
-    private final LiveData<List<TransactionWithPerson>> itemTransactions;
+    private final MutableLiveData<TransactionFilter> filter = new MutableLiveData<>();
+    // creates the PagingSource for the current filter, invalidated upon filter changes
+    private final InvalidatingPagingSourceFactory<Integer, TransactionWithPerson> pagingSourceFactory;
+    private final LiveData<PagingData<TransactionWithPerson>> transactions;
+    private final LiveData<TransactionTotal> total;
 
     public TransactionListViewModel (Application application) {
         super(application);
         txnRepository = new TransactionRepository(application);
         personRepository = new PersonRepository(application);
-        moneyTransactions = txnRepository.getAllMoneyTransactions();
-        itemTransactions = txnRepository.getAllItemTransactions();
+
+        // the filter is applied by the database query, so switching it only replaces the
+        // PagingSource instead of filtering all loaded transactions in memory
+        pagingSourceFactory = new InvalidatingPagingSourceFactory<>(
+                () -> txnRepository.getTransactionsPagingSource(Objects.requireNonNull(filter.getValue())));
+        // cache the loaded pages in the viewModel, so they survive configuration changes
+        transactions = PagingLiveData.cachedIn(
+                txnRepository.getTransactionsPaged(pagingSourceFactory),
+                ViewModelKt.getViewModelScope(this));
+        // the total is calculated by the database, so it does not depend on which pages are loaded
+        total = Transformations.switchMap(filter, txnRepository::getTotal);
+    }
+
+    /**
+     * Sets which transactions are provided by getTransactions() and summed up by getTotal().
+     * Setting a filter equal to the current one has no effect. Must be called before observing
+     * getTransactions().
+     */
+    public void setFilter(@NonNull TransactionFilter filter) {
+        if (!Objects.equals(this.filter.getValue(), filter)) {
+            this.filter.setValue(filter);
+            pagingSourceFactory.invalidate();
+        }
     }
 
-    public LiveData<List<TransactionWithPerson>> getMoneyTransactions() {
-        return moneyTransactions;
+    public LiveData<PagingData<TransactionWithPerson>> getTransactions() {
+        return transactions;
     }
-    public LiveData<List<TransactionWithPerson>> getItemTransactions() {
-        return itemTransactions;
+    public LiveData<TransactionTotal> getTotal() {
+        return total;
     }
 
     public Transaction getTransactionFromDatabase(int idTransaction) throws ExecutionException, InterruptedException {
@@ -53,6 +88,13 @@ public class TransactionListViewModel extends AndroidViewModel {
         txnRepository.delete(transaction);
     }
 
+    public void delete(List<Integer> idTransactions) {
+        txnRepository.deleteByIds(idTransactions);
+    }
+    public void markReturned(List<Integer> idTransactions) {
+        txnRepository.markReturnedByIds(idTransactions, new Date());
+    }
+
     public boolean isTransactionReturned(int idTransaction) throws ExecutionException, InterruptedException {
         return txnRepository.getTransaction(idTransaction).transaction.isReturned();
     }
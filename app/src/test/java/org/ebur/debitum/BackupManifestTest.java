@@ -0,0 +1,79 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.BackupManifest;
+import org.ebur.debitum.util.IncompleteChainException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BackupManifestTest {
+    private BackupManifest full;
+    private BackupManifest incremental1;
+    private BackupManifest incremental2;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        full = BackupManifest.create(null);
+        full.add(new BackupManifest.Entry("00000001.jpg", 123, 1000L, "ab12", true));
+        full.add(new BackupManifest.Entry("name with\tspecial chars.png", 5, 2000L, "cd34", true));
+        incremental1 = BackupManifest.create(full);
+        incremental2 = BackupManifest.create(incremental1);
+    }
+
+    @Test
+    public void writeRead_roundtrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        full.write(out);
+        BackupManifest read = BackupManifest.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(read.id, is(full.id));
+        assertThat(read.baseId, is(nullValue()));
+        assertThat(read.created, is(full.created));
+        assertThat(read.getEntries().size(), is(2));
+        BackupManifest.Entry entry = read.get("name with\tspecial chars.png");
+        assertThat(entry.size, is(5L));
+        assertThat(entry.lastModified, is(2000L));
+        assertThat(entry.sha256, is("cd34"));
+        assertThat(entry.included, is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_invalid() throws IOException {
+        BackupManifest.read(new ByteArrayInputStream("no manifest".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void create_incremental() {
+        assertThat(full.isFull(), is(true));
+        assertThat(incremental1.isFull(), is(false));
+        assertThat(incremental1.baseId, is(full.id));
+    }
+
+    @Test
+    public void orderChain_unordered() throws IncompleteChainException {
+        assertThat(BackupManifest.orderChain(Arrays.asList(incremental2, full, incremental1)),
+                is(Arrays.asList(full, incremental1, incremental2)));
+    }
+
+    @Test(expected = IncompleteChainException.class)
+    public void orderChain_missingIncrement() throws IncompleteChainException {
+        BackupManifest.orderChain(Arrays.asList(full, incremental2));
+    }
+
+    @Test(expected = IncompleteChainException.class)
+    public void orderChain_missingFull() throws IncompleteChainException {
+        BackupManifest.orderChain(Arrays.asList(incremental1, incremental2));
+    }
+}
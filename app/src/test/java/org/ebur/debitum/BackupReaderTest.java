@@ -0,0 +1,220 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import androidx.annotation.NonNull;
+
+import org.ebur.debitum.util.BackupReader;
+import org.ebur.debitum.util.BackupWriter;
+import org.ebur.debitum.util.IncompleteChainException;
+import org.ebur.debitum.util.InvalidBackupException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class BackupReaderTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dbFile;
+    private File imageDir;
+    private List<File> images;
+    private Properties prefs;
+    private BackupReader reader;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() throws IOException {
+        dbFile = tmp.newFile("transaction_database");
+        try (FileOutputStream out = new FileOutputStream(dbFile)) {
+            out.write("SQLite format 3\0".getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[50_000]);
+        }
+        imageDir = tmp.newFolder("images");
+        images = new ArrayList<>(Arrays.asList(createImage("00000001.jpg", 1), createImage("00000002.png", 2)));
+        prefs = new Properties();
+        prefs.setProperty("decimals", "3");
+
+        File dbDir = tmp.newFolder("databases");
+        File restoredImageDir = tmp.newFolder("restored");
+        reader = new BackupReader(new File(dbDir, "transaction_database-restore"), new File(restoredImageDir, "restore"));
+    }
+
+    private File createImage(String name, int content) throws IOException {
+        File file = new File(imageDir, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            byte[] bytes = new byte[20_000];
+            Arrays.fill(bytes, (byte) content);
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    @NonNull
+    private static BackupReader.Archive archive(@NonNull byte[] zip) {
+        return new BackupReader.Archive() {
+            @NonNull
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(zip);
+            }
+
+            @Override
+            public long length() {
+                return zip.length;
+            }
+        };
+    }
+
+    @NonNull
+    private byte[] backup(BackupWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out, null);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void read_singleBackup() throws IOException {
+        byte[] zip = backup(new BackupWriter(dbFile, prefs, images, null));
+        final long[] progress = {0, 0};
+        reader.read(Collections.singletonList(archive(zip)), (bytesDone, bytesTotal) -> {
+            progress[0] = bytesDone;
+            progress[1] = bytesTotal;
+        });
+
+        assertThat(Files.readAllBytes(reader.getDatabaseFile().toPath()), is(Files.readAllBytes(dbFile.toPath())));
+        Properties restoredPrefs = new Properties();
+        try (InputStream in = Files.newInputStream(reader.getPreferencesFile().toPath())) {
+            restoredPrefs.loadFromXML(in);
+        }
+        assertThat(restoredPrefs, is(prefs));
+
+        File dest = tmp.newFolder("dest");
+        assertThat(reader.moveImages(dest), is(0));
+        assertThat(dest.list().length, is(2));
+        assertThat(Files.readAllBytes(new File(dest, "00000002.png").toPath()), is(Files.readAllBytes(images.get(1).toPath())));
+        assertThat(progress[0], is((long) zip.length));
+        assertThat(progress[1], is((long) zip.length));
+    }
+
+    @Test
+    public void read_chain() throws IOException {
+        BackupWriter full = new BackupWriter(dbFile, prefs, images, null);
+        byte[] fullZip = backup(full);
+
+        // change one image, delete the other and add a new one
+        File changed = createImage("00000001.jpg", 7);
+        changed.setLastModified(changed.lastModified() + 2000);
+        images.get(1).delete();
+        images = Arrays.asList(changed, createImage("00000003.jpg", 3));
+        byte[] incrementalZip = backup(new BackupWriter(dbFile, prefs, images, full.getManifest()));
+
+        // order of the given archives does not matter
+        reader.read(Arrays.asList(archive(incrementalZip), archive(fullZip)), null);
+
+        File dest = tmp.newFolder("dest");
+        assertThat(reader.moveImages(dest), is(0));
+        String[] restored = dest.list();
+        Arrays.sort(restored);
+        assertThat(restored, is(new String[]{"00000001.jpg", "00000003.jpg"}));
+        assertThat(Files.readAllBytes(new File(dest, "00000001.jpg").toPath()), is(Files.readAllBytes(changed.toPath())));
+    }
+
+    @Test(expected = IncompleteChainException.class)
+    public void read_incompleteChain() throws IOException {
+        BackupWriter full = new BackupWriter(dbFile, prefs, images, null);
+        backup(full);
+        byte[] incrementalZip = backup(new BackupWriter(dbFile, prefs, images, full.getManifest()));
+        reader.read(Collections.singletonList(archive(incrementalZip)), null);
+    }
+
+    @Test
+    public void read_databaseNotFirst() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            zipOut.putNextEntry(new ZipEntry("00000001.jpg"));
+            zipOut.write(1);
+            zipOut.closeEntry();
+        }
+        assertInvalid(out.toByteArray(), InvalidBackupException.NO_DATABASE);
+    }
+
+    @Test
+    public void read_notADatabase() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            zipOut.putNextEntry(new ZipEntry(BackupWriter.ENTRY_DB));
+            zipOut.write("just some text".getBytes(StandardCharsets.UTF_8));
+            zipOut.closeEntry();
+        }
+        assertInvalid(out.toByteArray(), InvalidBackupException.NOT_A_DATABASE);
+    }
+
+    private void assertInvalid(byte[] zip, int reason) throws IOException {
+        try {
+            reader.read(Collections.singletonList(archive(zip)), null);
+            fail("InvalidBackupException expected");
+        } catch (InvalidBackupException e) {
+            assertThat(e.reason, is(reason));
+        }
+    }
+
+    @Test
+    public void read_corruptEntry() throws IOException {
+        byte[] zip = backup(new BackupWriter(dbFile, prefs, images, null));
+        // flip a bit in the middle of the data of the last image
+        zip[zip.length / 2] ^= 1;
+        assertInvalid(zip, InvalidBackupException.CORRUPT_ARCHIVE);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_entryOutsideOfDir() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+            zipOut.putNextEntry(new ZipEntry(BackupWriter.ENTRY_DB));
+            zipOut.write(Files.readAllBytes(dbFile.toPath()));
+            zipOut.closeEntry();
+            zipOut.putNextEntry(new ZipEntry("../evil.jpg"));
+            zipOut.write(1);
+            zipOut.closeEntry();
+        }
+        reader.read(Collections.singletonList(archive(out.toByteArray())), null);
+    }
+
+    @Test
+    public void cancel_stopsReading() throws IOException {
+        byte[] zip = backup(new BackupWriter(dbFile, prefs, images, null));
+        reader.cancel();
+        try {
+            reader.read(Collections.singletonList(archive(zip)), null);
+            fail("CancellationException expected");
+        } catch (CancellationException e) {
+            reader.cleanUp();
+            assertThat(reader.getDatabaseFile(), is(nullValue()));
+            assertThat(new File(tmp.getRoot(), "databases").list().length, is(0));
+        }
+    }
+}
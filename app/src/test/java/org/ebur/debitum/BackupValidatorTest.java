@@ -0,0 +1,126 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.ebur.debitum.util.BackupValidator;
+import org.ebur.debitum.util.BackupWriter;
+import org.ebur.debitum.util.InvalidBackupException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class BackupValidatorTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File backup;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() throws IOException {
+        File dbFile = tmp.newFile("transaction_database");
+        File image = tmp.newFile("00000001.jpg");
+        Files.write(dbFile.toPath(), "SQLite format 3\0 and some more content".getBytes(StandardCharsets.US_ASCII));
+        Files.write(image.toPath(), new byte[3000]);
+        backup = tmp.newFile("backup.zip");
+        try (FileOutputStream out = new FileOutputStream(backup)) {
+            new BackupWriter(dbFile, new Properties(), Collections.singletonList(image), null).write(out, null);
+        }
+    }
+
+    private BackupValidator.ArchiveInfo check(File zip) throws IOException {
+        try (FileChannel channel = FileChannel.open(zip.toPath())) {
+            return BackupValidator.checkArchive(channel);
+        }
+    }
+
+    private void assertInvalid(File zip, int reason) throws IOException {
+        try {
+            check(zip);
+            fail("InvalidBackupException expected");
+        } catch (InvalidBackupException e) {
+            assertThat(e.reason, is(reason));
+        }
+    }
+
+    @Test
+    public void checkArchive_backup() throws IOException {
+        BackupValidator.ArchiveInfo info = check(backup);
+        assertThat(info.entries.size(), is(4));
+        assertThat(info.entries.get(0).name, is(BackupWriter.ENTRY_DB));
+        assertThat(info.entries.get(0).offset, is(0L));
+        assertThat(info.entries.get(2).name, is("00000001.jpg"));
+        assertThat(info.entries.get(2).size, is(3000L));
+        long total = 0;
+        for (BackupValidator.ArchiveEntry entry : info.entries) total += entry.size;
+        assertThat(info.totalSize, is(total));
+    }
+
+    @Test
+    public void checkArchive_withComment() throws IOException {
+        File zip = tmp.newFile("comment.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.setComment("a comment");
+            out.putNextEntry(new ZipEntry(BackupWriter.ENTRY_DB));
+            out.write(1);
+            out.closeEntry();
+        }
+        assertThat(check(zip).entries.size(), is(1));
+    }
+
+    @Test
+    public void checkArchive_truncated() throws IOException {
+        byte[] content = Files.readAllBytes(backup.toPath());
+        File truncated = tmp.newFile("truncated.zip");
+        Files.write(truncated.toPath(), Arrays.copyOf(content, content.length - 30));
+        assertInvalid(truncated, InvalidBackupException.CORRUPT_ARCHIVE);
+    }
+
+    @Test
+    public void checkArchive_noZip() throws IOException {
+        File file = tmp.newFile("no.zip");
+        Files.write(file.toPath(), new byte[1000]);
+        assertInvalid(file, InvalidBackupException.CORRUPT_ARCHIVE);
+    }
+
+    @Test
+    public void checkArchive_databaseNotFirst() throws IOException {
+        File zip = tmp.newFile("order.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("00000001.jpg"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry(BackupWriter.ENTRY_DB));
+            out.closeEntry();
+        }
+        assertInvalid(zip, InvalidBackupException.NO_DATABASE);
+    }
+
+    @Test
+    public void checkArchive_entryOutsideOfDir() throws IOException {
+        File zip = tmp.newFile("slip.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry(BackupWriter.ENTRY_DB));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("../00000001.jpg"));
+            out.closeEntry();
+        }
+        assertInvalid(zip, InvalidBackupException.CORRUPT_ARCHIVE);
+    }
+}
@@ -0,0 +1,125 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.BackupManifest;
+import org.ebur.debitum.util.BackupWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class BackupWriterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dbFile;
+    private List<File> images;
+    private Properties prefs;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() throws IOException {
+        dbFile = createFile("transaction_database", 100_000);
+        images = Arrays.asList(createFile("00000001.jpg", 200_000), createFile("00000002.txt", 10));
+        prefs = new Properties();
+        prefs.setProperty("decimals", "2");
+    }
+
+    private File createFile(String name, int size) throws IOException {
+        File file = tmp.newFile(name);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) content[i] = (byte) (i % 251);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    @Test
+    public void write_containsAllEntries() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BackupWriter(dbFile, prefs, images, null).write(out, null);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            byte[] buffer = new byte[8192];
+            while ((entry = zis.getNextEntry()) != null) {
+                names.add(entry.getName());
+                long size = 0;
+                int length;
+                while ((length = zis.read(buffer)) > 0) size += length;
+                if (entry.getName().equals(BackupWriter.ENTRY_DB)) assertThat(size, is(dbFile.length()));
+                if (entry.getName().equals("00000001.jpg")) assertThat(size, is(200_000L));
+            }
+        }
+        assertThat(names, is(Arrays.asList(BackupWriter.ENTRY_DB, BackupWriter.ENTRY_PREFS,
+                "00000001.jpg", "00000002.txt", BackupWriter.ENTRY_MANIFEST)));
+    }
+
+    @Test
+    public void write_incremental_onlyChangedImages() throws IOException {
+        BackupWriter full = new BackupWriter(dbFile, prefs, images, null);
+        full.write(new ByteArrayOutputStream(), null);
+        BackupManifest base = full.getManifest();
+
+        // change one image
+        File changed = images.get(1);
+        try (FileOutputStream out = new FileOutputStream(changed, true)) {
+            out.write(42);
+        }
+        changed.setLastModified(changed.lastModified() + 2000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BackupWriter incremental = new BackupWriter(dbFile, prefs, images, base);
+        incremental.write(out, null);
+
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) names.add(entry.getName());
+        }
+        assertThat(names, is(Arrays.asList(BackupWriter.ENTRY_DB, BackupWriter.ENTRY_PREFS,
+                "00000002.txt", BackupWriter.ENTRY_MANIFEST)));
+
+        BackupManifest manifest = incremental.getManifest();
+        assertThat(manifest.baseId, is(base.id));
+        assertThat(manifest.get("00000001.jpg").included, is(false));
+        assertThat(manifest.get("00000001.jpg").sha256, is(base.get("00000001.jpg").sha256));
+        assertThat(manifest.get("00000002.txt").included, is(true));
+    }
+
+    @Test
+    public void write_reportsProgress() throws IOException {
+        long[] last = {0, 0};
+        new BackupWriter(dbFile, prefs, images, null).write(new ByteArrayOutputStream(), (done, total) -> {
+            last[0] = done;
+            last[1] = total;
+        });
+        assertThat(last[0], is(310_010L));
+        assertThat(last[1], is(310_010L));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void write_cancelled() throws IOException {
+        BackupWriter writer = new BackupWriter(dbFile, prefs, images, null);
+        writer.write(new ByteArrayOutputStream(), (done, total) -> writer.cancel());
+    }
+}
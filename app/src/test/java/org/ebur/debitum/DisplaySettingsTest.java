@@ -0,0 +1,50 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.DisplaySettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class DisplaySettingsTest {
+
+    // 2021-03-04T23:30:00Z, which is already the next day in timezones east of UTC
+    private static final Date DATE = new Date(1614900600000L);
+
+    private DisplaySettings displaySettings;
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() {
+        displaySettings = new DisplaySettings(2, new SimpleDateFormat("yyyy-MM-dd", Locale.US), 1, 2);
+    }
+
+    @Test
+    public void formatDate_inUtc() {
+        assertThat(displaySettings.formatDate(DATE), is("2021-03-04"));
+        assertThat(displaySettings.formatDate(null) == null, is(true));
+    }
+
+    @Test
+    public void formatDate_onOtherThread() throws InterruptedException {
+        AtomicReference<String> formatted = new AtomicReference<>();
+        Thread thread = new Thread(() -> formatted.set(displaySettings.formatDate(DATE)));
+        thread.start();
+        thread.join();
+        assertThat(formatted.get(), is("2021-03-04"));
+    }
+
+    @Test
+    public void equals_comparesAllSettings() {
+        assertThat(displaySettings.equals(new DisplaySettings(2, new SimpleDateFormat("yyyy-MM-dd", Locale.US), 1, 2)), is(true));
+        assertThat(displaySettings.equals(new DisplaySettings(3, new SimpleDateFormat("yyyy-MM-dd", Locale.US), 1, 2)), is(false));
+        assertThat(displaySettings.equals(new DisplaySettings(2, new SimpleDateFormat("dd.MM.yyyy", Locale.US), 1, 2)), is(false));
+        assertThat(displaySettings.equals(new DisplaySettings(2, new SimpleDateFormat("yyyy-MM-dd", Locale.US), 2, 1)), is(false));
+    }
+}
@@ -0,0 +1,55 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.ImageIngester;
+import org.junit.Test;
+
+public class ImageIngesterTest {
+
+    @Test
+    public void calculateTargetSize_noLimit() {
+        assertThat(ImageIngester.calculateTargetSize(4000, 3000, 0), is(new int[]{4000, 3000}));
+    }
+
+    @Test
+    public void calculateTargetSize_smallImageIsNotScaledUp() {
+        assertThat(ImageIngester.calculateTargetSize(1000, 800, 2048), is(new int[]{1000, 800}));
+        assertThat(ImageIngester.calculateTargetSize(2048, 1024, 2048), is(new int[]{2048, 1024}));
+    }
+
+    @Test
+    public void calculateTargetSize_longerSideIsLimited() {
+        assertThat(ImageIngester.calculateTargetSize(4000, 3000, 2048), is(new int[]{2048, 1536}));
+        assertThat(ImageIngester.calculateTargetSize(3000, 4000, 2048), is(new int[]{1536, 2048}));
+    }
+
+    @Test
+    public void calculateTargetSize_extremeAspectRatio() {
+        // the shorter side never becomes 0
+        assertThat(ImageIngester.calculateTargetSize(10000, 2, 1280), is(new int[]{1280, 1}));
+    }
+
+    @Test
+    public void calculateInSampleSize_noScaling() {
+        assertThat(ImageIngester.calculateInSampleSize(4000, 3000, 4000, 3000), is(1));
+    }
+
+    @Test
+    public void calculateInSampleSize_cameraPhoto() {
+        // 4000 / 2 = 2000 >= 1280, 4000 / 4 < 1280
+        assertThat(ImageIngester.calculateInSampleSize(4000, 3000, 1280, 960), is(2));
+        // 4000 / 4 = 1000 >= 1000
+        assertThat(ImageIngester.calculateInSampleSize(4000, 3000, 1000, 750), is(4));
+    }
+
+    @Test
+    public void getExtension_transparentImagesAreNotJpeg() {
+        assertThat(ImageIngester.getExtension(ImageIngester.FORMAT_JPEG, "png", false), is("jpg"));
+        assertThat(ImageIngester.getExtension(ImageIngester.FORMAT_JPEG, "png", true), is("png"));
+        assertThat(ImageIngester.getExtension(ImageIngester.FORMAT_WEBP, "png", true), is("webp"));
+        assertThat(ImageIngester.getExtension(ImageIngester.FORMAT_ORIGINAL, "jpg", false), is("jpg"));
+        assertThat(ImageIngester.getExtension(ImageIngester.FORMAT_ORIGINAL, "gif", true), is("png"));
+    }
+}
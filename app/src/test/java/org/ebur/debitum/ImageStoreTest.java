@@ -0,0 +1,104 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.ImageStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class ImageStoreTest {
+
+    // SHA-256 of "abc"
+    private static final String SHA256_ABC = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File imageDir;
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() throws IOException {
+        imageDir = tmp.newFolder("images");
+    }
+
+    @Test
+    public void filenames() {
+        assertThat(ImageStore.getFilename(SHA256_ABC, "JPG"), is(SHA256_ABC + ".jpg"));
+        assertThat(ImageStore.isContentAddressed(SHA256_ABC + ".jpg"), is(true));
+        assertThat(ImageStore.isContentAddressed("0000002a.jpg"), is(false));
+        assertThat(ImageStore.isContentAddressed(SHA256_ABC), is(false));
+        assertThat(ImageStore.getExtension("0000002a.jpeg"), is("jpeg"));
+    }
+
+    @Test
+    public void tempFiles() throws IOException {
+        File tmpFile1 = ImageStore.createTempFile(imageDir);
+        File tmpFile2 = ImageStore.createTempFile(imageDir);
+        assertThat(tmpFile1.equals(tmpFile2), is(false));
+        assertThat(ImageStore.isTemporary(tmpFile1.getName()), is(true));
+        assertThat(ImageStore.isTemporary(SHA256_ABC + ".jpg"), is(false));
+    }
+
+    @Test
+    public void sha256() throws IOException {
+        assertThat(ImageStore.sha256(write(tmp.newFile(), "abc")), is(SHA256_ABC));
+    }
+
+    @Test
+    public void store_identicalContentIsStoredOnce() throws IOException {
+        File tmpFile1 = write(ImageStore.createTempFile(imageDir), "abc");
+        File image1 = ImageStore.store(tmpFile1, SHA256_ABC, "jpg", imageDir);
+        File tmpFile2 = write(ImageStore.createTempFile(imageDir), "abc");
+        File image2 = ImageStore.store(tmpFile2, SHA256_ABC, "jpg", imageDir);
+
+        assertThat(image1, is(new File(imageDir, SHA256_ABC + ".jpg")));
+        assertThat(image2, is(image1));
+        assertThat(tmpFile1.exists(), is(false));
+        assertThat(tmpFile2.exists(), is(false));
+        String[] files = imageDir.list();
+        assertThat(files != null ? files.length : -1, is(1));
+    }
+
+    @Test
+    public void store_pinsBeforeMoving() throws IOException {
+        File tmpFile = write(ImageStore.createTempFile(imageDir), "abc");
+        File image = new File(imageDir, SHA256_ABC + ".jpg");
+        List<String> pinned = new ArrayList<>();
+        ImageStore.store(tmpFile, SHA256_ABC, "jpg", imageDir, new ImageStore.Pins() {
+            @Override
+            public void pin(String filename) {
+                // the collector must know the image before it can see it
+                assertThat(image.exists(), is(false));
+                pinned.add(filename);
+            }
+
+            @Override
+            public void unpin(Collection<String> filenames) {
+                pinned.removeAll(filenames);
+            }
+        });
+        assertThat(pinned, is(Collections.singletonList(SHA256_ABC + ".jpg")));
+        assertThat(image.isFile(), is(true));
+    }
+
+    private static File write(File file, String content) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,74 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.MonetaryFormatter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * MonetaryFormatter must produce exactly what the String.format based implementation of
+ * Transaction.formatMonetaryAmount produced, for all locales and amounts.
+ */
+public class MonetaryFormatterTest {
+
+    private static final int[] EDGE_CASES = {
+            0, 1, -1, 9, 10, 99, 100, 999, 1000, -1000, 999_999, 1_000_000, -1_234_567,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1
+    };
+    private static final int RANDOM_AMOUNTS_PER_LOCALE = 50;
+
+    private Random random;
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() {
+        // fixed seed, so failures are reproducible
+        random = new Random(20220701);
+    }
+
+    @Test
+    public void format_sameAsStringFormat_allLocales() {
+        for (Locale locale : Locale.getAvailableLocales()) {
+            MonetaryFormatter formatter = MonetaryFormatter.getInstance(locale);
+            for (int decimals = 0; decimals <= MonetaryFormatter.MAX_DECIMALS; decimals++) {
+                for (int amount : EDGE_CASES) {
+                    assertFormat(formatter, locale, amount, decimals);
+                }
+                for (int i = 0; i < RANDOM_AMOUNTS_PER_LOCALE; i++) {
+                    // mostly everyday amounts, but also the whole int range
+                    int amount = i % 2 == 0 ? random.nextInt(2_000_000) - 1_000_000 : random.nextInt();
+                    assertFormat(formatter, locale, amount, decimals);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatTo_appends() {
+        MonetaryFormatter formatter = MonetaryFormatter.getInstance(Locale.US);
+        StringBuilder sb = new StringBuilder("sum: ");
+        formatter.formatTo(sb, -123456, 2).append(" / ");
+        formatter.formatTo(sb, 7, 0);
+        assertThat(sb.toString(), is("sum: -1,234.56 / 7"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void format_tooManyDecimals() {
+        MonetaryFormatter.getInstance(Locale.US).format(1, MonetaryFormatter.MAX_DECIMALS + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void format_negativeDecimals() {
+        MonetaryFormatter.getInstance(Locale.US).format(1, -1);
+    }
+
+    private static void assertFormat(MonetaryFormatter formatter, Locale locale, int amount, int decimals) {
+        String expected = String.format(locale, "%,." + decimals + "f", amount / Math.pow(10.0, decimals));
+        assertThat(locale + ", " + amount + ", " + decimals, formatter.format(amount, decimals), is(expected));
+    }
+}
@@ -0,0 +1,82 @@
+package org.ebur.debitum;
+
+import org.ebur.debitum.database.Person;
+import org.ebur.debitum.database.PersonSummary;
+import org.ebur.debitum.viewModel.ListOrderViewModel;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PersonSummaryTest {
+    private List<PersonSummary> psList;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        psList = new ArrayList<>();
+        for (int i = 1; i<=10; i++) {
+            Person person = new Person("Theo Tester " + i); person.idPerson = i;
+            // sum of all sums will be 1+2+..+10 = 5*11 = 55
+            // number of items will be 2+4+..+20 = 5*22 = 110
+            psList.add(new PersonSummary(person, i, 2*i, new Date(1234567890L*i), 2));
+        }
+    }
+
+    @Test
+    public void getSumStatic() {
+        assertThat(PersonSummary.getSum(psList), is(55));
+    }
+
+    @Test
+    public void getNumberOfItemsStatic() {
+        assertThat(PersonSummary.getNumberOfItems(psList), is(110));
+    }
+
+    @Test
+    public void getSumSign() {
+        Person person = new Person("Fred Colon");
+        assertThat(new PersonSummary(person, -5, 0, new Date(0), 1).getSumSign(), is(-1));
+        assertThat(new PersonSummary(person, 0, 3, new Date(0), 1).getSumSign(), is(0));
+        assertThat(psList.get(0).getSumSign(), is(1));
+    }
+
+    @Test
+    public void equals_equal() {
+        PersonSummary ps = psList.get(0);
+        PersonSummary copy = new PersonSummary(ps.person, ps.sum, ps.numberOfItems, ps.lastTimestamp, ps.txnCount);
+        assertThat(ps.equals(copy), is(true));
+    }
+
+    @Test
+    public void equals_nonequal() {
+        PersonSummary ps = psList.get(0);
+        PersonSummary changed = new PersonSummary(ps.person, ps.sum + 1, ps.numberOfItems, ps.lastTimestamp, ps.txnCount);
+        assertThat(ps.equals(changed), is(false));
+    }
+
+    @Test
+    public void getComparator_bySumDescending() {
+        List<PersonSummary> sorted = new ArrayList<>(psList);
+        Collections.shuffle(sorted);
+        sorted.sort(PersonSummary.getComparator(ListOrderViewModel.ORDER_AMOUNT, false));
+        assertThat(sorted.get(0).sum, is(10));
+        assertThat(sorted.get(9).sum, is(1));
+    }
+
+    @Test
+    public void getComparator_byDateAscending() {
+        List<PersonSummary> sorted = new ArrayList<>(psList);
+        Collections.reverse(sorted);
+        sorted.sort(PersonSummary.getComparator(ListOrderViewModel.ORDER_DATE, true));
+        assertThat(sorted, is(psList));
+    }
+}
@@ -0,0 +1,28 @@
+package org.ebur.debitum;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.ebur.debitum.util.ThumbnailLoader;
+import org.junit.Test;
+
+public class ThumbnailLoaderTest {
+
+    @Test
+    public void calculateInSampleSize_smallImage() {
+        assertThat(ThumbnailLoader.calculateInSampleSize(300, 200, 336), is(1));
+        assertThat(ThumbnailLoader.calculateInSampleSize(336, 336, 336), is(1));
+    }
+
+    @Test
+    public void calculateInSampleSize_cameraPhoto() {
+        // 12 MP, shorter side 3000 px: 3000 / 8 = 375 >= 336, 3000 / 16 < 336
+        assertThat(ThumbnailLoader.calculateInSampleSize(4000, 3000, 336), is(8));
+        assertThat(ThumbnailLoader.calculateInSampleSize(3000, 4000, 336), is(8));
+    }
+
+    @Test
+    public void calculateInSampleSize_exactPowerOfTwo() {
+        assertThat(ThumbnailLoader.calculateInSampleSize(1344, 1344, 336), is(4));
+    }
+}
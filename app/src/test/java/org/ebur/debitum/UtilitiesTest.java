@@ -7,6 +7,10 @@ import org.ebur.debitum.util.Utilities;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public class UtilitiesTest {
 
     /**
@@ -28,4 +32,21 @@ public class UtilitiesTest {
     public void checkNextInt_3() {
         assertThat(Utilities.nextInt(4.4), is(4));
     }
+
+    @Test
+    public void partition_evenlyDivisible() {
+        List<List<Integer>> parts = Utilities.partition(Arrays.asList(1, 2, 3, 4), 2);
+        assertThat(parts.size(), is(2));
+        assertThat(parts.get(1), is(Arrays.asList(3, 4)));
+    }
+    @Test
+    public void partition_remainder() {
+        List<List<Integer>> parts = Utilities.partition(Arrays.asList(1, 2, 3, 4, 5), 2);
+        assertThat(parts.size(), is(3));
+        assertThat(parts.get(2), is(Collections.singletonList(5)));
+    }
+    @Test
+    public void partition_empty() {
+        assertThat(Utilities.partition(Collections.emptyList(), 999).isEmpty(), is(true));
+    }
 }
@@ -0,0 +1,94 @@
+package org.ebur.debitum.database;
+
+import androidx.annotation.NonNull;
+
+import org.ebur.debitum.BuildConfig;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings of a DatabaseBenchmark run, written as <name>.csv and <name>.json so they can be
+ * tracked over releases.
+ */
+class BenchmarkReport {
+
+    private static final String CSV_HEADER = "size,operation,runs,min_ms,median_ms,max_ms";
+
+    private static class Result {
+        final int size;
+        final String operation;
+        final long[] nanos;
+
+        Result(int size, String operation, long[] nanos) {
+            this.size = size;
+            this.operation = operation;
+            this.nanos = nanos.clone();
+            Arrays.sort(this.nanos);
+        }
+
+        double minMs() { return nanos[0] / 1e6; }
+        double medianMs() { return nanos[nanos.length / 2] / 1e6; }
+        double maxMs() { return nanos[nanos.length - 1] / 1e6; }
+    }
+
+    private final String name;
+    private final String sqliteVersion;
+    private final List<Result> results = new ArrayList<>();
+
+    BenchmarkReport(@NonNull String name, @NonNull String sqliteVersion) {
+        this.name = name;
+        this.sqliteVersion = sqliteVersion;
+    }
+
+    void add(int size, @NonNull String operation, @NonNull long[] nanos) {
+        results.add(new Result(size, operation, nanos));
+    }
+
+    void write(@NonNull File dir) throws IOException, JSONException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        JSONArray jsonResults = new JSONArray();
+        for (Result result : results) {
+            csv.append(String.format(Locale.ROOT, "%d,%s,%d,%.3f,%.3f,%.3f%n",
+                    result.size, result.operation, result.nanos.length,
+                    result.minMs(), result.medianMs(), result.maxMs()));
+            jsonResults.put(new JSONObject()
+                    .put("size", result.size)
+                    .put("operation", result.operation)
+                    .put("runs", result.nanos.length)
+                    .put("minMs", result.minMs())
+                    .put("medianMs", result.medianMs())
+                    .put("maxMs", result.maxMs()));
+        }
+        JSONObject json = new JSONObject()
+                .put("benchmark", name)
+                .put("appVersion", BuildConfig.VERSION_NAME)
+                .put("sqliteVersion", sqliteVersion)
+                .put("date", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ", Locale.ROOT).format(new Date()))
+                .put("results", jsonResults);
+
+        writeFile(new File(dir, name + ".csv"), csv.toString());
+        writeFile(new File(dir, name + ".json"), json.toString(2));
+    }
+
+    private static void writeFile(@NonNull File file, @NonNull String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+}
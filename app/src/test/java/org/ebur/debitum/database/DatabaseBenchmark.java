@@ -0,0 +1,468 @@
+package org.ebur.debitum.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Times the queries of TransactionDao, PersonDao and ImageDao and the migrations of AppDatabase
+ * on synthetic ledgers of different sizes. Runs on Robolectric's SQLite, so no device is needed;
+ * absolute timings differ from devices, the reports are meant to be compared between releases
+ * benchmarked on the same machine.
+ *
+ * Skipped unless run with -PdatabaseBenchmark[=sizes] (see app/build.gradle), the reports are
+ * written to app/build/reports/database-benchmark.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseBenchmark {
+
+    private static final String PROPERTY_SIZES = "databaseBenchmark.sizes";
+    private static final String PROPERTY_REPORT_DIR = "databaseBenchmark.reportDir";
+    private static final String DEFAULT_SIZES = "1000,10000,100000";
+    private static final String DEFAULT_REPORT_DIR = "build/reports/database-benchmark";
+    // relative to the module directory, which is the working directory of unit tests
+    private static final String SCHEMA_VERSION_1 = "schemas/org.ebur.debitum.database.AppDatabase/1.json";
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+    // number of single row lookups/updates per run
+    private static final int LOOKUPS = 100;
+    // PAGE_SIZE of TransactionRepository
+    private static final int PAGE_SIZE = 50;
+
+    // ledger shape, same as in the JMH benchmarks
+    private static final int TRANSACTIONS_PER_PERSON = 100;
+    private static final int MONETARY_PERCENTAGE = 80;
+    private static final int IMAGE_PERCENTAGE = 10;
+    private static final long START_MS = 1_500_000_000_000L;
+    private static final int DAYS = 5 * 365;
+
+    private static final Migration[] MIGRATIONS = {
+            AppDatabase.MIGRATION_1_2,
+            AppDatabase.MIGRATION_2_3,
+            AppDatabase.MIGRATION_3_4,
+            AppDatabase.MIGRATION_4_5,
+            AppDatabase.MIGRATION_5_6,
+            AppDatabase.MIGRATION_6_7,
+            AppDatabase.MIGRATION_7_8
+    };
+
+    private Context context;
+    private int[] sizes;
+    private File reportDir;
+
+    /**
+     * Set up the environment for testing
+     */
+    @Before
+    public void setUp() {
+        String sizesProperty = System.getProperty(PROPERTY_SIZES);
+        assumeTrue("database benchmark is only run with -PdatabaseBenchmark", sizesProperty != null);
+        if (sizesProperty.trim().isEmpty()) sizesProperty = DEFAULT_SIZES;
+        sizes = Arrays.stream(sizesProperty.split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim()))
+                .toArray();
+        reportDir = new File(System.getProperty(PROPERTY_REPORT_DIR, DEFAULT_REPORT_DIR));
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void queries() throws IOException, JSONException {
+        BenchmarkReport report = null;
+        for (int size : sizes) {
+            String name = "benchmark-queries-" + size;
+            AppDatabase db = Room.databaseBuilder(context, AppDatabase.class, name)
+                    .addCallback(AppDatabase.CREATE_TRIGGERS_CALLBACK)
+                    .allowMainThreadQueries()
+                    .build();
+            try {
+                SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+                if (report == null) report = new BenchmarkReport("queries", getSqliteVersion(sqlite));
+                benchmarkQueries(db, size, report);
+            } finally {
+                db.close();
+                context.deleteDatabase(name);
+            }
+        }
+        if (report != null) report.write(reportDir);
+    }
+
+    @Test
+    public void migrations() throws IOException, JSONException {
+        JSONObject schema = new JSONObject(new String(
+                Files.readAllBytes(new File(SCHEMA_VERSION_1).toPath()),
+                StandardCharsets.UTF_8)).getJSONObject("database");
+        BenchmarkReport report = null;
+        for (int size : sizes) {
+            String name = "benchmark-migrations-" + size;
+            SupportSQLiteOpenHelper helper = createVersion1Database(name, schema);
+            try {
+                SupportSQLiteDatabase sqlite = helper.getWritableDatabase();
+                if (report == null) report = new BenchmarkReport("migrations", getSqliteVersion(sqlite));
+                Random random = new Random(size);
+                populateVersion1(sqlite, size, random);
+                for (Migration migration : MIGRATIONS) {
+                    report.add(size,
+                            "MIGRATION_" + migration.startVersion + "_" + migration.endVersion,
+                            time(1, () -> migrate(sqlite, migration)));
+                    // image links can be stored from version 5 on
+                    if (migration.endVersion == 5) populateImageLinks(sqlite, size, random);
+                }
+            } finally {
+                helper.close();
+                context.deleteDatabase(name);
+            }
+        }
+        if (report != null) report.write(reportDir);
+    }
+
+    // -------
+    // Queries
+    // -------
+
+    private void benchmarkQueries(@NonNull AppDatabase db, int size, @NonNull BenchmarkReport report) {
+        TransactionDao transactionDao = db.transactionDao();
+        PersonDao personDao = db.personDao();
+        ImageDao imageDao = db.imageDao();
+        SupportSQLiteDatabase sqlite = db.getOpenHelper().getWritableDatabase();
+        Random random = new Random(size);
+        int personCount = getPersonCount(size);
+
+        report.add(size, "populate", time(1, () -> populate(db, size, random)));
+
+        int[] idTransactions = random.ints(LOOKUPS, 1, size + 1).toArray();
+        int[] idPersons = random.ints(LOOKUPS, 1, personCount + 1).toArray();
+        int idPerson = idPersons[0];
+
+        // LiveData and PagingSource queries are run directly, like Room does when they are observed
+        report.add(size, "TransactionDao.getTransactionsPaged(money)", time(RUNS, () ->
+                loadFirstPage(sqlite, TransactionDao.QUERY_TRANSACTIONS, 1, 1, 1)));
+        report.add(size, "TransactionDao.getTransactionsPaged(unreturned items)", time(RUNS, () ->
+                loadFirstPage(sqlite, TransactionDao.QUERY_TRANSACTIONS, 0, 1, 0)));
+        report.add(size, "TransactionDao.getTransactionsOfPersonPaged(money)", time(RUNS, () ->
+                loadFirstPage(sqlite, TransactionDao.QUERY_TRANSACTIONS_OF_PERSON, idPerson, 1, 1, 1)));
+        report.add(size, "TransactionDao.getTotal(money)", time(RUNS, () ->
+                readAll(sqlite.query(new SimpleSQLiteQuery(TransactionDao.QUERY_TOTAL, new Object[]{1, 1, 1})))));
+        report.add(size, "TransactionDao.getTotalOfPerson(money)", time(RUNS, () ->
+                readAll(sqlite.query(new SimpleSQLiteQuery(TransactionDao.QUERY_TOTAL_OF_PERSON, new Object[]{idPerson, 1, 1, 1})))));
+        report.add(size, "TransactionDao.getAllPersonSummaries", time(RUNS, () ->
+                readAll(sqlite.query(TransactionDao.QUERY_PERSON_SUMMARIES))));
+        report.add(size, "TransactionDao.getTransaction x" + LOOKUPS, time(RUNS, () -> {
+            for (int id : idTransactions) transactionDao.getTransaction(id);
+        }));
+
+        report.add(size, "PersonDao.getAllPersons", time(RUNS, personDao::getAllPersonsNonLive));
+        report.add(size, "PersonDao.getPersonById x" + LOOKUPS, time(RUNS, () -> {
+            for (int id : idPersons) personDao.getPersonById(id);
+        }));
+        report.add(size, "PersonDao.getPersonId x" + LOOKUPS, time(RUNS, () -> {
+            for (int id : idPersons) personDao.getPersonId(getPersonName(id));
+        }));
+        report.add(size, "PersonDao.exists x" + LOOKUPS, time(RUNS, () -> {
+            for (int id : idPersons) personDao.exists(getPersonName(id));
+        }));
+
+        report.add(size, "ImageDao.getImageFilenames x" + LOOKUPS, time(RUNS, () -> {
+            for (int id : idTransactions) imageDao.getImageFilenames(id);
+        }));
+        report.add(size, "ImageDao.getAllImageFilenames", time(RUNS, imageDao::getAllImageFilenames));
+
+        // writes change the ledger, so they are run once, in an order that keeps the following
+        // ones meaningful
+        int onePercent = Math.max(1, size / 100);
+        List<Transaction> newTransactions = new ArrayList<>(onePercent);
+        for (int i = 0; i < onePercent; i++) newTransactions.add(newTransaction(personCount, random));
+        report.add(size, "TransactionDao.insertAll(1%)", time(1, () -> transactionDao.insertAll(newTransactions)));
+
+        List<Transaction> changedTransactions = new ArrayList<>(onePercent);
+        for (int id = 1; id <= onePercent; id++) {
+            Transaction transaction = transactionDao.getTransaction(id).transaction;
+            transaction.amount++;
+            changedTransactions.add(transaction);
+        }
+        report.add(size, "TransactionDao.updateAll(1%)", time(1, () -> transactionDao.updateAll(changedTransactions)));
+
+        List<Integer> allIds = getIds(1, size);
+        report.add(size, "TransactionDao.markReturnedByIds(all)", time(1, () ->
+                transactionDao.markReturnedByIds(allIds, new Date())));
+        report.add(size, "TransactionDao.changeDecimals(+1)", time(1, () -> transactionDao.changeDecimals(1)));
+        report.add(size, "TransactionDao.changeDecimals(-1)", time(1, () -> transactionDao.changeDecimals(-1)));
+
+        report.add(size, "ImageDao.update x" + LOOKUPS, time(1, () -> {
+            for (int id : idTransactions) imageDao.update(id, Arrays.asList(getImageFilename(id), getImageFilename(-id)));
+        }));
+        report.add(size, "ImageDao.rename x" + LOOKUPS, time(1, () -> {
+            for (int id : idTransactions) imageDao.rename(getImageFilename(-id), getImageFilename(size + id));
+        }));
+        List<String> filenames = imageDao.getAllImageFilenames();
+        List<String> deletedFilenames = filenames.subList(0, Math.min(filenames.size(), Math.max(1, filenames.size() / 100)));
+        report.add(size, "ImageDao.deleteLinks(1%)", time(1, () -> imageDao.deleteLinks(deletedFilenames)));
+
+        report.add(size, "TransactionDao.deleteByIds(1%)", time(1, () ->
+                transactionDao.deleteByIds(getIds(size - onePercent + 1, size))));
+        report.add(size, "PersonDao.deleteByIds(1%)", time(1, () ->
+                personDao.deleteByIds(getIds(1, Math.max(1, personCount / 100)))));
+    }
+
+    /**
+     * Inserts a synthetic ledger of size transactions through the DAOs, as the app would
+     */
+    private static void populate(@NonNull AppDatabase db, int size, @NonNull Random random) {
+        int personCount = getPersonCount(size);
+        Person[] persons = new Person[personCount];
+        for (int i = 0; i < personCount; i++) persons[i] = new Person(getPersonName(i + 1));
+        db.personDao().insert(persons);
+
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) transactions.add(newTransaction(personCount, random));
+        db.transactionDao().insertAll(transactions);
+
+        List<Image> images = new ArrayList<>();
+        for (int id = 1; id <= size; id++) {
+            if (random.nextInt(100) < IMAGE_PERCENTAGE) images.add(new Image(newImageFilename(size, random), id));
+        }
+        db.imageDao().insert(images.toArray(new Image[0]));
+    }
+
+    /**
+     * Runs the queries Room's paging source runs for the first page of a transaction list: it
+     * counts the rows, loads the page and the persons of its transactions (@Relation).
+     * @param args bound in order of the first occurrence of the named parameters of query
+     */
+    private static void loadFirstPage(@NonNull SupportSQLiteDatabase sqlite, @NonNull String query, Object... args) {
+        readAll(sqlite.query(new SimpleSQLiteQuery("SELECT COUNT(*) FROM ( " + query + " )", args)));
+
+        Object[] pageArgs = Arrays.copyOf(args, args.length + 2);
+        pageArgs[args.length] = PAGE_SIZE;
+        pageArgs[args.length + 1] = 0;
+        Set<Long> idPersons = new HashSet<>();
+        try (Cursor cursor = sqlite.query(new SimpleSQLiteQuery("SELECT * FROM ( " + query + " ) LIMIT ? OFFSET ?", pageArgs))) {
+            int idPersonColumn = cursor.getColumnIndexOrThrow("id_person");
+            while (cursor.moveToNext()) {
+                readRow(cursor);
+                idPersons.add(cursor.getLong(idPersonColumn));
+            }
+        }
+
+        readAll(sqlite.query("SELECT * FROM person WHERE id_person IN ("
+                + idPersons.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")"));
+    }
+
+    // ----------
+    // Migrations
+    // ----------
+
+    /**
+     * Creates an empty database with the schema of version 1, as exported by Room
+     */
+    @NonNull
+    private SupportSQLiteOpenHelper createVersion1Database(@NonNull String name, @NonNull JSONObject schema) {
+        SupportSQLiteOpenHelper.Configuration configuration = SupportSQLiteOpenHelper.Configuration.builder(context)
+                .name(name)
+                .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        try {
+                            createSchema(db, schema);
+                        } catch (JSONException e) {
+                            throw new IllegalStateException("Invalid schema " + SCHEMA_VERSION_1, e);
+                        }
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(configuration);
+    }
+
+    private static void createSchema(@NonNull SupportSQLiteDatabase db, @NonNull JSONObject schema) throws JSONException {
+        JSONArray entities = schema.getJSONArray("entities");
+        for (int i = 0; i < entities.length(); i++) {
+            JSONObject entity = entities.getJSONObject(i);
+            String tableName = entity.getString("tableName");
+            db.execSQL(entity.getString("createSql").replace("${TABLE_NAME}", tableName));
+            JSONArray indices = entity.optJSONArray("indices");
+            for (int j = 0; indices != null && j < indices.length(); j++) {
+                db.execSQL(indices.getJSONObject(j).getString("createSql").replace("${TABLE_NAME}", tableName));
+            }
+        }
+        JSONArray setupQueries = schema.getJSONArray("setupQueries");
+        for (int i = 0; i < setupQueries.length(); i++) {
+            db.execSQL(setupQueries.getString(i));
+        }
+    }
+
+    private static void populateVersion1(@NonNull SupportSQLiteDatabase sqlite, int size, @NonNull Random random) {
+        int personCount = getPersonCount(size);
+        sqlite.beginTransaction();
+        try {
+            SupportSQLiteStatement insertPerson = sqlite.compileStatement(
+                    "INSERT INTO person (id_person, name) VALUES (?, ?)");
+            for (int id = 1; id <= personCount; id++) {
+                insertPerson.bindLong(1, id);
+                insertPerson.bindString(2, getPersonName(id));
+                insertPerson.executeInsert();
+            }
+            SupportSQLiteStatement insertTransaction = sqlite.compileStatement(
+                    "INSERT INTO txn (id_transaction, amount, id_person, description, is_monetary, timestamp) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)");
+            for (int id = 1; id <= size; id++) {
+                Transaction transaction = newTransaction(personCount, random);
+                insertTransaction.bindLong(1, id);
+                insertTransaction.bindLong(2, transaction.amount);
+                insertTransaction.bindLong(3, transaction.idPerson);
+                insertTransaction.bindString(4, transaction.description);
+                insertTransaction.bindLong(5, transaction.isMonetary ? 1 : 0);
+                insertTransaction.bindLong(6, transaction.timestamp.getTime());
+                insertTransaction.executeInsert();
+            }
+            sqlite.setTransactionSuccessful();
+        } finally {
+            sqlite.endTransaction();
+        }
+    }
+
+    private static void populateImageLinks(@NonNull SupportSQLiteDatabase sqlite, int size, @NonNull Random random) {
+        sqlite.beginTransaction();
+        try {
+            SupportSQLiteStatement insertImage = sqlite.compileStatement(
+                    "INSERT INTO image (id_transaction, filename) VALUES (?, ?)");
+            for (int id = 1; id <= size; id++) {
+                if (random.nextInt(100) >= IMAGE_PERCENTAGE) continue;
+                insertImage.bindLong(1, id);
+                insertImage.bindString(2, newImageFilename(size, random));
+                insertImage.executeInsert();
+            }
+            sqlite.setTransactionSuccessful();
+        } finally {
+            sqlite.endTransaction();
+        }
+    }
+
+    // Room runs migrations in a transaction
+    private static void migrate(@NonNull SupportSQLiteDatabase sqlite, @NonNull Migration migration) {
+        sqlite.beginTransaction();
+        try {
+            migration.migrate(sqlite);
+            sqlite.setTransactionSuccessful();
+        } finally {
+            sqlite.endTransaction();
+        }
+    }
+
+    // -------
+    // Helpers
+    // -------
+
+    /**
+     * @param runs number of timed runs, preceded by WARMUP_RUNS untimed ones if more than one
+     * @return the duration of each timed run in ns
+     */
+    @NonNull
+    private static long[] time(int runs, @NonNull Runnable operation) {
+        long[] nanos = new long[runs];
+        for (int i = runs > 1 ? -WARMUP_RUNS : 0; i < runs; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            if (i >= 0) nanos[i] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    private static void readAll(@NonNull Cursor cursor) {
+        try (Cursor c = cursor) {
+            while (c.moveToNext()) readRow(c);
+        }
+    }
+
+    // reads all columns, as the code generated by Room does
+    private static void readRow(@NonNull Cursor cursor) {
+        for (int i = 0; i < cursor.getColumnCount(); i++) cursor.getString(i);
+    }
+
+    @NonNull
+    private static String getSqliteVersion(@NonNull SupportSQLiteDatabase sqlite) {
+        try (Cursor cursor = sqlite.query("select sqlite_version()")) {
+            return cursor.moveToFirst() ? cursor.getString(0) : "";
+        }
+    }
+
+    private static int getPersonCount(int size) {
+        return Math.max(1, size / TRANSACTIONS_PER_PERSON);
+    }
+
+    @NonNull
+    private static String getPersonName(int idPerson) {
+        return "Person " + idPerson;
+    }
+
+    @NonNull
+    private static Transaction newTransaction(int personCount, @NonNull Random random) {
+        int idPerson = random.nextInt(personCount) + 1;
+        boolean isMonetary = random.nextInt(100) < MONETARY_PERCENTAGE;
+        int amount = isMonetary
+                ? random.nextInt(200_000) - 100_000
+                : (random.nextBoolean() ? 1 : -1) * (random.nextInt(5) + 1);
+        Date timestamp = new Date(START_MS + TimeUnit.DAYS.toMillis(random.nextInt(DAYS)));
+        Transaction transaction = new Transaction(idPerson, amount, isMonetary, "Transaction", timestamp);
+        // half of the items are returned already
+        if (!isMonetary && random.nextBoolean()) {
+            transaction.timestampReturned = new Date(timestamp.getTime() + TimeUnit.DAYS.toMillis(random.nextInt(30)));
+        }
+        return transaction;
+    }
+
+    // content-addressed filename, about 20 links per image
+    @NonNull
+    private static String newImageFilename(int size, @NonNull Random random) {
+        return getImageFilename(random.nextInt(Math.max(1, size / 200)));
+    }
+
+    @NonNull
+    private static String getImageFilename(int n) {
+        return String.format(Locale.ROOT, "%064x.jpg", n);
+    }
+
+    @NonNull
+    private static List<Integer> getIds(int from, int to) {
+        List<Integer> ids = new ArrayList<>(Math.max(0, to - from + 1));
+        for (int id = from; id <= to; id++) ids.add(id);
+        return ids;
+    }
+}
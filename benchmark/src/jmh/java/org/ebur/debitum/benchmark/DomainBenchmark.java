@@ -0,0 +1,63 @@
+package org.ebur.debitum.benchmark;
+
+import org.ebur.debitum.database.PersonWithTransactions;
+import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.database.TransactionWithPerson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregations over all transactions of a ledger, as done for the list headers and the person
+ * sum list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DomainBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Ledger ledger;
+
+    @Setup
+    public void setUp() {
+        ledger = new Ledger(size);
+    }
+
+    @Benchmark
+    public int transactionGetSum() {
+        return Transaction.getSum(ledger.transactions);
+    }
+
+    @Benchmark
+    public int transactionGetNumberOfItems() {
+        return Transaction.getNumberOfItems(ledger.transactions);
+    }
+
+    @Benchmark
+    public int transactionWithPersonGetSum() {
+        return TransactionWithPerson.getSum(ledger.transactionsWithPerson);
+    }
+
+    @Benchmark
+    public int personWithTransactionsGetSum() {
+        return PersonWithTransactions.getSum(ledger.personsWithTransactions);
+    }
+
+    @Benchmark
+    public void personWithTransactionsGetLastTxnTimestamp(Blackhole blackhole) {
+        for (PersonWithTransactions pwt : ledger.personsWithTransactions) {
+            blackhole.consume(pwt.getLastTxnTimestamp());
+        }
+    }
+}
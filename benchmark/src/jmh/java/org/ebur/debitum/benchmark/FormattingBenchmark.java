@@ -0,0 +1,74 @@
+package org.ebur.debitum.benchmark;
+
+import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.util.DisplaySettings;
+import org.ebur.debitum.util.Utilities;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing of single values, as done per list row bind and in the edit dialog.
+ * The values are taken round-robin from a 1k transactions ledger.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormattingBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private List<Transaction> transactions;
+    private String[] formattedAmounts;
+    private DisplaySettings displaySettings;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Locale.setDefault(Locale.GERMANY);
+        transactions = new Ledger(SIZE).transactions;
+        formattedAmounts = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            formattedAmounts[i] = Transaction.formatMonetaryAmount(transactions.get(i).amount, 2);
+        }
+        displaySettings = new DisplaySettings(2,
+                new SimpleDateFormat(Utilities.DATE_FORMAT, Locale.getDefault()), 0, 0);
+    }
+
+    private int next() {
+        index = (index + 1) % SIZE;
+        return index;
+    }
+
+    @Benchmark
+    public String formatMonetaryAmount() {
+        return Transaction.formatMonetaryAmount(transactions.get(next()).amount, 2);
+    }
+
+    /** a new SimpleDateFormat per call */
+    @Benchmark
+    public String utilitiesFormatDate() {
+        return Utilities.formatDate(transactions.get(next()).timestamp, Utilities.DATE_FORMAT);
+    }
+
+    /** the reused date format of the list rows */
+    @Benchmark
+    public String displaySettingsFormatDate() {
+        return displaySettings.formatDate(transactions.get(next()).timestamp);
+    }
+
+    @Benchmark
+    public double utilitiesParseAmount() throws ParseException {
+        return Utilities.parseAmount(formattedAmounts[next()]);
+    }
+}
@@ -0,0 +1,76 @@
+package org.ebur.debitum.benchmark;
+
+import org.ebur.debitum.database.Person;
+import org.ebur.debitum.database.PersonSummary;
+import org.ebur.debitum.database.PersonWithTransactions;
+import org.ebur.debitum.database.Transaction;
+import org.ebur.debitum.database.TransactionWithPerson;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic ledger of persons with monetary and item transactions. Ledgers of the same size are
+ * identical, so results of different runs are comparable.
+ */
+final class Ledger {
+
+    // average number of transactions per person, i.e. 10, 1000 and 10000 persons for the
+    // 1k, 100k and 1M transaction scales
+    static final int TRANSACTIONS_PER_PERSON = 100;
+    // percentage of monetary transactions, the others are lent items
+    private static final int MONETARY_PERCENTAGE = 80;
+    private static final long START_MS = 1_500_000_000_000L;
+    private static final int DAYS = 5 * 365;
+
+    final List<Person> persons;
+    final List<Transaction> transactions;
+    final List<TransactionWithPerson> transactionsWithPerson;
+    final List<PersonWithTransactions> personsWithTransactions;
+    final List<PersonSummary> personSummaries;
+
+    Ledger(int size) {
+        Random random = new Random(size);
+        int personCount = Math.max(1, size / TRANSACTIONS_PER_PERSON);
+
+        persons = new ArrayList<>(personCount);
+        personsWithTransactions = new ArrayList<>(personCount);
+        for (int i = 1; i <= personCount; i++) {
+            Person person = new Person("Person " + i);
+            person.idPerson = i;
+            persons.add(person);
+            personsWithTransactions.add(new PersonWithTransactions(person, new ArrayList<>()));
+        }
+
+        transactions = new ArrayList<>(size);
+        transactionsWithPerson = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            int personIndex = i <= personCount ? i - 1 : random.nextInt(personCount);
+            Person person = persons.get(personIndex);
+            boolean isMonetary = random.nextInt(100) < MONETARY_PERCENTAGE;
+            int amount = isMonetary
+                    ? random.nextInt(200_000) - 100_000
+                    : (random.nextBoolean() ? 1 : -1) * (random.nextInt(5) + 1);
+            Date timestamp = new Date(START_MS + TimeUnit.DAYS.toMillis(random.nextInt(DAYS)));
+            Transaction transaction = new Transaction(person.idPerson, amount, isMonetary, "Transaction " + i, timestamp);
+            transaction.idTransaction = i;
+
+            transactions.add(transaction);
+            transactionsWithPerson.add(new TransactionWithPerson(transaction, person));
+            personsWithTransactions.get(personIndex).transactions.add(transaction);
+        }
+
+        // what TransactionDao::getAllPersonSummaries would return
+        personSummaries = new ArrayList<>(personCount);
+        for (PersonWithTransactions pwt : personsWithTransactions) {
+            personSummaries.add(new PersonSummary(pwt.person,
+                    pwt.getSum(),
+                    pwt.getNumberOfItems(),
+                    pwt.getLastTxnTimestamp(),
+                    pwt.transactions.size()));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.ebur.debitum.benchmark;
+
+import org.ebur.debitum.util.MonetaryFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares MonetaryFormatter with the String.format based implementation that
+ * Transaction.formatMonetaryAmount used before. Run with -prof gc to see the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MonetaryFormatterBenchmark {
+
+    // power of two, so the next amount can be selected by masking
+    private static final int AMOUNT_COUNT = 1024;
+
+    @Param({"en-US", "de-DE", "fr-FR"})
+    public String languageTag;
+
+    @Param({"0", "2", "3"})
+    public int decimals;
+
+    private Locale locale;
+    private int[] amounts;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        locale = Locale.forLanguageTag(languageTag);
+        Random random = new Random(42);
+        amounts = new int[AMOUNT_COUNT];
+        for (int i = 0; i < AMOUNT_COUNT; i++) {
+            amounts[i] = random.nextInt(2_000_000) - 1_000_000;
+        }
+    }
+
+    private int nextAmount() {
+        return amounts[index++ & (AMOUNT_COUNT - 1)];
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format(locale, "%,." + decimals + "f", nextAmount() / Math.pow(10.0, decimals));
+    }
+
+    @Benchmark
+    public String monetaryFormatter() {
+        return MonetaryFormatter.getInstance(locale).format(nextAmount(), decimals);
+    }
+
+    @Benchmark
+    public int monetaryFormatterReusedBuilder(BuilderState state) {
+        state.sb.setLength(0);
+        return MonetaryFormatter.getInstance(locale).formatTo(state.sb, nextAmount(), decimals).length();
+    }
+
+    @State(Scope.Thread)
+    public static class BuilderState {
+        final StringBuilder sb = new StringBuilder();
+    }
+}
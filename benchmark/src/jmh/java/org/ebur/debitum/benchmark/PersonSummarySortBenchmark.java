@@ -0,0 +1,52 @@
+package org.ebur.debitum.benchmark;
+
+import org.ebur.debitum.database.PersonSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Sorting of the person sum list, as done by PersonSumListFragment on every update. The ledger
+ * has size / Ledger.TRANSACTIONS_PER_PERSON persons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersonSummarySortBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    // ListOrderViewModel.ORDER_NAME, ORDER_DATE and ORDER_AMOUNT
+    @Param({"0", "2", "4"})
+    public int orderBy;
+
+    @Param({"true", "false"})
+    public boolean ascending;
+
+    private List<PersonSummary> summaries;
+    private Comparator<PersonSummary> comparator;
+
+    @Setup
+    public void setUp() {
+        summaries = new Ledger(size).personSummaries;
+        comparator = PersonSummary.getComparator(orderBy, ascending);
+    }
+
+    @Benchmark
+    public List<PersonSummary> sort() {
+        return summaries.stream()
+                .sorted(comparator)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,43 @@
+package org.ebur.debitum.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import kotlin.Unit;
+
+/**
+ * Records the classes and methods used while starting the app and scrolling the transaction list,
+ * as a replacement for app/src/main/baseline-prof.txt.
+ * Needs root, i.e. an emulator with API 28+ and a "Google APIs" (not "Google Play") image. Not a
+ * benchmark, so run it on its own, see the header of baseline-prof.txt.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() throws IOException {
+        BenchmarkApp.seedDatabase();
+    }
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collectBaselineProfile(BenchmarkApp.PACKAGE_NAME, scope -> {
+            scope.pressHome(300);
+            scope.startActivityAndWait(intent -> Unit.INSTANCE);
+            BenchmarkApp.openTransactionList(scope.getDevice());
+            BenchmarkApp.flingList(scope.getDevice());
+            return Unit.INSTANCE;
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package org.ebur.debitum.macrobenchmark;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The app's benchmark build and the UI interactions shared by the benchmarks
+ */
+final class BenchmarkApp {
+
+    // applicationId of the app's benchmark build type
+    static final String PACKAGE_NAME = "org.ebur.debitum.benchmark";
+    // transactions in the seeded database, i.e. 1000 persons
+    static final int LEDGER_SIZE = 100_000;
+    static final int ITERATIONS = 10;
+
+    private static final String SEED_ACTIVITY = "org.ebur.debitum.database.SeedDatabaseActivity";
+    private static final long SEED_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long UI_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final int FLINGS = 5;
+
+    private BenchmarkApp() {}
+
+    /**
+     * Fills the app's database with LEDGER_SIZE transactions (if not done already) and stops the
+     * app again, so the benchmarks start from a large but otherwise untouched ledger.
+     */
+    static void seedDatabase() throws IOException {
+        UiDevice device = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+        device.executeShellCommand("am start -W -n " + PACKAGE_NAME + "/" + SEED_ACTIVITY
+                + " --ei size " + LEDGER_SIZE);
+        if (!Boolean.TRUE.equals(device.wait(Until.hasObject(By.text("seeded " + LEDGER_SIZE)), SEED_TIMEOUT_MS))) {
+            throw new IllegalStateException("Seeding the database of " + PACKAGE_NAME + " timed out");
+        }
+        device.executeShellCommand("am force-stop " + PACKAGE_NAME);
+    }
+
+    /** Switches from the start screen to the list of monetary transactions */
+    static void openTransactionList(@NonNull UiDevice device) {
+        device.findObject(byId("money_dest")).click();
+        findList(device);
+    }
+
+    /** Flings the visible list down and waits until it has settled after each fling */
+    static void flingList(@NonNull UiDevice device) {
+        UiObject2 list = findList(device);
+        // keep clear of the system gesture areas at the edges
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < FLINGS; i++) {
+            list.fling(Direction.DOWN);
+            device.waitForIdle();
+        }
+    }
+
+    @NonNull
+    private static UiObject2 findList(@NonNull UiDevice device) {
+        UiObject2 list = device.wait(Until.findObject(byId("recyclerview")), UI_TIMEOUT_MS);
+        if (list == null) throw new IllegalStateException("No list shown");
+        return list;
+    }
+
+    // resource ids keep the package of R (org.ebur.debitum), not the application id of the build
+    @NonNull
+    private static BySelector byId(@NonNull String id) {
+        return By.res(Pattern.compile(".*:id/" + Pattern.quote(id)));
+    }
+}
@@ -0,0 +1,73 @@
+package org.ebur.debitum.macrobenchmark;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Time to the first frame of MainActivity (the list of persons), without any ahead of time
+ * compilation and with the baseline profile compiled, which is what users get from the Play Store.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() throws IOException {
+        BenchmarkApp.seedDatabase();
+    }
+
+    @Test
+    public void coldStartup_noCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    @Test
+    public void coldStartup_baselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require, 0), StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStartup_noCompilation() {
+        startup(new CompilationMode.None(), StartupMode.WARM);
+    }
+
+    @Test
+    public void warmStartup_baselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.Require, 0), StartupMode.WARM);
+    }
+
+    private void startup(@NonNull CompilationMode compilationMode, @NonNull StartupMode startupMode) {
+        benchmarkRule.measureRepeated(
+                BenchmarkApp.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                BenchmarkApp.ITERATIONS,
+                scope -> {
+                    scope.pressHome(300);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(intent -> Unit.INSTANCE);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,66 @@
+package org.ebur.debitum.macrobenchmark;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Frame times (i.e. jank) while flinging through the paged list of monetary transactions
+ * (TransactionListFragment) of a large ledger.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionListScrollBenchmark {
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    /** Set up the environment for testing */
+    @Before
+    public void setUp() throws IOException {
+        BenchmarkApp.seedDatabase();
+    }
+
+    @Test
+    public void scroll_noCompilation() {
+        scroll(new CompilationMode.None());
+    }
+
+    @Test
+    public void scroll_baselineProfile() {
+        scroll(new CompilationMode.Partial(BaselineProfileMode.Require, 0));
+    }
+
+    private void scroll(@NonNull CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                BenchmarkApp.PACKAGE_NAME,
+                Collections.singletonList(new FrameTimingMetric()),
+                compilationMode,
+                StartupMode.WARM,
+                BenchmarkApp.ITERATIONS,
+                scope -> {
+                    // only the flings are measured, not opening the list
+                    scope.pressHome(300);
+                    scope.startActivityAndWait(intent -> Unit.INSTANCE);
+                    BenchmarkApp.openTransactionList(scope.getDevice());
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    BenchmarkApp.flingList(scope.getDevice());
+                    return Unit.INSTANCE;
+                });
+    }
+}